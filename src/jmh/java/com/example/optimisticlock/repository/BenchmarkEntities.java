@@ -0,0 +1,163 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+
+import javax.persistence.Id;
+import java.util.ArrayList;
+import java.util.List;
+
+// ベンチマークで使うフィールド数・継承階層の異なるエンティティとマッパー。
+public final class BenchmarkEntities {
+
+    private BenchmarkEntities() {
+    }
+
+    /**
+     * 形の名前に対応するエンティティを主キーを設定して生成する。
+     * @param shape narrow(2フィールド)、wide(21フィールド)、deep(3階層の継承)のいずれか
+     * @param id 主キー
+     * @return エンティティ
+     */
+    public static BaseEntity create(String shape, long id) {
+        switch (shape) {
+            case "narrow":
+                return new NarrowEntity(id, "name" + id);
+            case "wide":
+                return new WideEntity(id);
+            case "deep":
+                return new DeepEntity(id);
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+    }
+
+    /**
+     * 形の名前に対応するエンティティを指定件数生成する。
+     * @param shape エンティティの形
+     * @param size 件数
+     * @return 主キーが1から連番のエンティティ一覧
+     */
+    public static List<BaseEntity> createList(String shape, int size) {
+        List<BaseEntity> entities = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            entities.add(create(shape, i));
+        }
+        return entities;
+    }
+
+    /**
+     * 形の名前に対応するマッパーインタフェースを取得する。
+     * @param shape エンティティの形
+     * @return マッパーインタフェース
+     */
+    public static Class<?> mapperType(String shape) {
+        switch (shape) {
+            case "narrow":
+                return NarrowRepository.class;
+            case "wide":
+                return WideRepository.class;
+            case "deep":
+                return DeepRepository.class;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+    }
+
+    @TableName("bench_narrow")
+    public static class NarrowEntity extends BaseEntity {
+        @Id
+        private Long id;
+        private String name;
+
+        public NarrowEntity() {
+        }
+
+        public NarrowEntity(Long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @TableName("bench_wide")
+    public static class WideEntity extends BaseEntity {
+        @Id
+        private Long id;
+        private String field01;
+        private String field02;
+        private String field03;
+        private String field04;
+        private String field05;
+        private String field06;
+        private String field07;
+        private String field08;
+        private String field09;
+        private String field10;
+        private Integer field11;
+        private Integer field12;
+        private Integer field13;
+        private Integer field14;
+        private Integer field15;
+        private Long field16;
+        private Long field17;
+        private Long field18;
+        private Long field19;
+        private Long field20;
+
+        public WideEntity() {
+        }
+
+        public WideEntity(Long id) {
+            this.id = id;
+            this.field01 = "value" + id;
+        }
+    }
+
+    public abstract static class DeepLevel1 extends BaseEntity {
+        private String level1Code;
+        private String level1Name;
+    }
+
+    public abstract static class DeepLevel2 extends DeepLevel1 {
+        private String level2Code;
+        private String level2Name;
+    }
+
+    @TableName("bench_deep")
+    public static class DeepEntity extends DeepLevel2 {
+        @Id
+        private Long id;
+        private String level3Code;
+        private String level3Name;
+
+        public DeepEntity() {
+        }
+
+        public DeepEntity(Long id) {
+            this.id = id;
+            this.level3Code = "code" + id;
+        }
+    }
+
+    public interface NarrowRepository extends BaseRepository<NarrowEntity> {}
+
+    public interface WideRepository extends BaseRepository<WideEntity> {}
+
+    public interface DeepRepository extends BaseRepository<DeepEntity> {}
+}
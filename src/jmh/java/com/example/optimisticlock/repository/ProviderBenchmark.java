@@ -0,0 +1,166 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.builder.annotation.ProviderContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// BaseRepositoryProviderのSQL生成とエンティティ解析のコストを、エンティティの形と件数ごとに測るベンチマーク。
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProviderBenchmark {
+
+    private static final String[] PROPERTY_NAMES = {
+        "id", "zzcmnCname", "zzcmnCdate", "zzcmnFname", "zzcmnFdate", "level1Code", "field20"
+    };
+
+    @State(Scope.Benchmark)
+    public static class Shape {
+
+        @Param({"narrow", "wide", "deep"})
+        public String shape;
+
+        final BaseRepositoryProvider provider = new BaseRepositoryProvider();
+        BaseEntity entity;
+        Class<?> entityClass;
+        ProviderContext context;
+        Set<String> patchFields;
+        List<String> projection;
+
+        @Setup
+        public void setUp() throws Exception {
+            entity = BenchmarkEntities.create(shape, 1);
+            entityClass = entity.getClass();
+            context = providerContext(BenchmarkEntities.mapperType(shape));
+            patchFields = Collections.singleton("zzcmnFname");
+            projection = Arrays.asList("zzcmnFname", "zzcmnFdate");
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({"1", "16", "256", "1000"})
+        public int size;
+
+        List<BaseEntity> entities;
+
+        @Setup
+        public void setUp(Shape shape) {
+            entities = BenchmarkEntities.createList(shape.shape, size);
+        }
+    }
+
+    @Benchmark
+    public String insert(Shape state) {
+        return state.provider.insert(state.entity);
+    }
+
+    @Benchmark
+    public String update(Shape state) {
+        return state.provider.update(state.entity);
+    }
+
+    @Benchmark
+    public String upsert(Shape state) {
+        return state.provider.upsert(state.entity);
+    }
+
+    @Benchmark
+    public String patch(Shape state) {
+        return state.provider.patch(state.entity, state.patchFields);
+    }
+
+    @Benchmark
+    public String delete(Shape state) {
+        return state.provider.delete(state.entity);
+    }
+
+    @Benchmark
+    public String findById(Shape state) {
+        return state.provider.findById(state.entity);
+    }
+
+    @Benchmark
+    public String findByIdProjected(Shape state) {
+        return state.provider.findByIdProjected(state.entity, state.projection);
+    }
+
+    @Benchmark
+    public String findAll(Shape state) {
+        return state.provider.findAll(state.context);
+    }
+
+    @Benchmark
+    public String checkUpdate(Shape state) {
+        return state.provider.checkUpdate(state.entity);
+    }
+
+    @Benchmark
+    public String insertAll(Shape state, Batch batch) {
+        return state.provider.insertAll(batch.entities);
+    }
+
+    @Benchmark
+    public String checkUpdateList(Shape state, Batch batch) {
+        return state.provider.checkUpdateList(batch.entities);
+    }
+
+    @Benchmark
+    public String findByIds(Shape state, Batch batch) {
+        return state.provider.findByIds(batch.entities);
+    }
+
+    @Benchmark
+    public String findLockValues(Shape state, Batch batch) {
+        return state.provider.findLockValues(batch.entities);
+    }
+
+    @Benchmark
+    public String deleteAll(Shape state, Batch batch) {
+        return state.provider.deleteAll(batch.entities);
+    }
+
+    /**
+     * キャッシュを経由せずにエンティティを解析し、定型SQLを生成するコストを測る。
+     */
+    @Benchmark
+    public EntityMetadata parseMetadata(Shape state) {
+        return new EntityMetadata(state.entityClass);
+    }
+
+    @Benchmark
+    public void camelToSnake(Blackhole blackhole) {
+        for (String name : PROPERTY_NAMES) {
+            blackhole.consume(EntityMetadata.camelToSnake(name));
+        }
+    }
+
+    private static ProviderContext providerContext(Class<?> mapperType) throws Exception {
+        Constructor<ProviderContext> constructor = ProviderContext.class
+            .getDeclaredConstructor(Class.class, Method.class, String.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance(mapperType, null, null);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.BaseRepository;
+import com.example.optimisticlock.repository.BenchmarkEntities;
+import com.example.optimisticlock.repository.CachingLanguageDriver;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+import com.example.optimisticlock.repository.EntityResultSetInterceptor;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// インメモリH2に対してCrudServiceを呼び出し、マッパー・SQL生成・JDBCを含む1呼び出しあたりのコストを測るベンチマーク。
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrudServiceBenchmark {
+
+    // 事前登録する行数(主キー0は更新専用、1以降を検索・検証に使う)
+    private static final int ROW_COUNT = 1000;
+
+    private static final LocalDateTime INITIAL_FDATE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @State(Scope.Benchmark)
+    public static class Database {
+
+        @Param({"narrow", "wide"})
+        public String shape;
+
+        // xml: MyBatis標準の言語ドライバー、caching: CachingLanguageDriver
+        @Param({"xml", "caching"})
+        public String driver;
+
+        // auto: MyBatisの自動マッピング、compiled: EntityResultSetInterceptor
+        @Param({"auto", "compiled"})
+        public String mapping;
+
+        CrudService<BaseEntity, BaseRepository<BaseEntity>> service;
+        BaseEntity probe;
+        BaseEntity target;
+        private JdbcDataSource dataSource;
+        private Connection keepAlive;
+
+        @Setup(Level.Trial)
+        @SuppressWarnings("unchecked")
+        public void setUp() throws SQLException {
+            dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:bench_" + shape + "_" + driver + "_" + mapping + ";MODE=MySQL");
+            // 最後の接続が閉じるとインメモリDBが破棄されるため、計測中は接続を保持する
+            keepAlive = dataSource.getConnection();
+            try (Statement statement = keepAlive.createStatement()) {
+                statement.execute(createTableSql(EntityMetadataRegistry.get(BenchmarkEntities.create(shape, 0).getClass())));
+            }
+
+            Configuration configuration = new Configuration(
+                new Environment("benchmark", new JdbcTransactionFactory(), dataSource));
+            configuration.setMapUnderscoreToCamelCase(true);
+            if ("caching".equals(driver)) {
+                configuration.setDefaultScriptingLanguage(CachingLanguageDriver.class);
+            }
+            if ("compiled".equals(mapping)) {
+                configuration.addInterceptor(new EntityResultSetInterceptor());
+            }
+            Class<?> mapperType = BenchmarkEntities.mapperType(shape);
+            configuration.addMapper(mapperType);
+            SqlSessionManager sessions = SqlSessionManager.newInstance(new SqlSessionFactoryBuilder().build(configuration));
+            BaseRepository<BaseEntity> repository = (BaseRepository<BaseEntity>) sessions.getMapper(mapperType);
+            service = () -> repository;
+
+            List<BaseEntity> rows = BenchmarkEntities.createList(shape, ROW_COUNT);
+            rows.add(0, BenchmarkEntities.create(shape, 0));
+            rows.forEach(row -> row.setZzcmnFdate(INITIAL_FDATE));
+            service.insertAll(rows);
+
+            probe = BenchmarkEntities.create(shape, 1);
+            target = rows.get(0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            keepAlive.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rows {
+
+        @Param({"1", "16", "256", "1000"})
+        public int size;
+
+        List<BaseEntity> entities;
+
+        @Setup(Level.Trial)
+        public void setUp(Database database) {
+            entities = BenchmarkEntities.createList(database.shape, size);
+            entities.forEach(row -> row.setZzcmnFdate(INITIAL_FDATE));
+        }
+    }
+
+    @Benchmark
+    public BaseEntity findById(Database database) {
+        return database.service.findById(database.probe);
+    }
+
+    /**
+     * 全件取得。結果セットからエンティティへの詰め替えが支配的になる。
+     */
+    @Benchmark
+    public List<BaseEntity> findAll(Database database) {
+        return database.service.findAll();
+    }
+
+    /**
+     * 楽観ロック付き更新。成功時に新しい最終更新日時が反映されるため、同じエンティティで更新し続けられる。
+     */
+    @Benchmark
+    public BaseEntity update(Database database) {
+        return database.service.update(database.target);
+    }
+
+    @Benchmark
+    public MultiGetResult<BaseEntity> findByIds(Database database, Rows rows) {
+        return database.service.findByIds(rows.entities);
+    }
+
+    @Benchmark
+    public void checkUpdateList(Database database, Rows rows) {
+        database.service.checkUpdateList(rows.entities);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> findStaleKeys(Database database, Rows rows) {
+        return database.service.findStaleKeys(rows.entities);
+    }
+
+    /**
+     * メタデータのカラム定義からベンチマーク用のテーブル定義を組み立てる。
+     * @param metadata エンティティのメタデータ
+     * @return CREATE TABLE文
+     */
+    private static String createTableSql(EntityMetadata metadata) {
+        String columns = metadata.getColumns().stream()
+            .map(column -> column.getColumn() + " " + sqlType(column.getType()))
+            .collect(Collectors.joining(", "));
+        String ids = metadata.getIdColumns().stream()
+            .map(EntityMetadata.Column::getColumn)
+            .collect(Collectors.joining(", "));
+        return "CREATE TABLE " + metadata.getTableName() + " (" + columns + ", PRIMARY KEY (" + ids + "))";
+    }
+
+    private static String sqlType(Class<?> type) {
+        if (type == Long.class || type == long.class) {
+            return "BIGINT";
+        }
+        if (type == Integer.class || type == int.class) {
+            return "INT";
+        }
+        if (type == LocalDateTime.class) {
+            return "TIMESTAMP(3)";
+        }
+        return "VARCHAR(64)";
+    }
+}
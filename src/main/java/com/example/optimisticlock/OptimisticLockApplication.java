@@ -1,7 +1,21 @@
 package com.example.optimisticlock;
 
+import com.example.optimisticlock.repository.EntityObjectWrapperFactory;
+import com.example.optimisticlock.repository.EntityResultSetInterceptor;
+import com.example.optimisticlock.repository.RepositoryBatchExecutor;
+import com.example.optimisticlock.repository.RepositoryWarmUp;
+import com.example.optimisticlock.util.Json;
+import com.example.optimisticlock.util.MonotonicClock;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.boot.autoconfigure.ConfigurationCustomizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+
+import java.time.ZoneId;
 
 // アプリケーションのエントリーポイントとなるSpring Boot起動クラス。
 @SpringBootApplication
@@ -11,4 +25,62 @@ public class OptimisticLockApplication {
         SpringApplication.run(OptimisticLockApplication.class, args);
     }
 
+    /**
+     * 起動時にリポジトリのメタデータ解決とSQL生成を済ませるウォームアップ処理を登録する。
+     * @param sqlSessionFactory MyBatisのセッションファクトリ
+     * @return ウォームアップ処理
+     */
+    @Bean
+    public RepositoryWarmUp repositoryWarmUp(SqlSessionFactory sqlSessionFactory) {
+        return new RepositoryWarmUp(sqlSessionFactory);
+    }
+
+    /**
+     * 一括更新をJDBCバッチで送信するための実行器を登録し、サービスが既定で使う共通の実行器にも設定する。
+     * @param sqlSessionFactory MyBatisのセッションファクトリ
+     * @return バッチ実行器
+     */
+    @Bean
+    public RepositoryBatchExecutor repositoryBatchExecutor(SqlSessionFactory sqlSessionFactory) {
+        return RepositoryBatchExecutor.use(new RepositoryBatchExecutor(sqlSessionFactory));
+    }
+
+    /**
+     * 最終更新日時をDBと同じタイムゾーンで採番する時計を登録し、サービスが既定で使う共通の時計にも設定する。
+     * @param timeZone DBのタイムゾーン(接続設定のserverTimezoneと同じ値)
+     * @return 単調増加する時計
+     */
+    @Bean
+    public MonotonicClock monotonicClock(@Value("${app.database.time-zone}") String timeZone) {
+        return MonotonicClock.useZone(ZoneId.of(timeZone));
+    }
+
+    /**
+     * カーソル・ストリーミング出力など、Spring MVCのメッセージ変換を通らないJSON処理にも
+     * Spring Bootが構成したObjectMapper(spring.jackson.*の設定や登録済みモジュールを含む)を使わせる。
+     * @param objectMapper Spring Bootが構成したObjectMapper
+     */
+    @Autowired
+    public void shareObjectMapper(ObjectMapper objectMapper) {
+        Json.use(objectMapper);
+    }
+
+    /**
+     * エンティティ検索の結果を列構成ごとにコンパイルしたマッパーで詰め替えるプラグインを登録する。
+     * @return MyBatisのプラグイン
+     */
+    @Bean
+    public EntityResultSetInterceptor entityResultSetInterceptor() {
+        return new EntityResultSetInterceptor();
+    }
+
+    /**
+     * 生成済みメタデータを持つエンティティのプロパティを、生成したアクセサーで読み書きさせる。
+     * @return MyBatisの設定のカスタマイズ
+     */
+    @Bean
+    public ConfigurationCustomizer entityObjectWrapperCustomizer() {
+        return configuration -> configuration.setObjectWrapperFactory(new EntityObjectWrapperFactory());
+    }
+
 }
@@ -0,0 +1,12 @@
+package com.example.optimisticlock.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 同一主キーへの同時の主キー検索を1回のSELECTにまとめ、結果を共有するエンティティを指定する独自アノテーション。
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CoalesceReads {
+}
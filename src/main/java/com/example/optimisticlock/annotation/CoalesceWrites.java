@@ -0,0 +1,28 @@
+package com.example.optimisticlock.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 同一主キーへの同時更新を短い時間窓でまとめ、1回のUPDATEとして実行するエンティティを指定する独自アノテーション。
+ * <p>
+ * <b>付与すると、まとめた更新同士の競合検知は行われない。</b>
+ * 同じ楽観ロック値(同じ版)を元にした同時更新は、付与しなければ2件目以降がOptimisticLockExceptionになるが、
+ * 付与するとCrudService#getConflictMergerのマージ結果として黙って1回で更新され、全員が成功を受け取る。
+ * 同じ版への同時編集を利用者へ競合として知らせる必要があるエンティティには付与しないこと。
+ * 異なる版を元にした更新は個別に実行されるため、従来どおり楽観ロックで失敗する。
+ * <p>
+ * 時間窓を待つのは、同じ振り分け先に実行中の更新があるときだけで、他に更新がなければ待たずに実行する。
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CoalesceWrites {
+
+    // 同一主キーへの更新を待ち合わせる時間窓(ミリ秒)。振り分け先に他の更新がない場合は待たない
+    long windowMillis() default 5;
+
+    // 主キーを振り分けるキューの分割数
+    int stripes() default 64;
+}
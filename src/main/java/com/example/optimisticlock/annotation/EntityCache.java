@@ -0,0 +1,18 @@
+package com.example.optimisticlock.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 主キー検索の結果をアプリケーション内でキャッシュするエンティティを指定する独自アノテーション。
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface EntityCache {
+
+    // 保持する最大件数
+    long maximumSize() default 10000;
+
+    // 登録からの有効期間(秒)
+    long expireAfterWriteSeconds() default 300;
+}
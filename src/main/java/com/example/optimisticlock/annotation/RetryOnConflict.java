@@ -0,0 +1,21 @@
+package com.example.optimisticlock.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// 楽観ロック競合時にサーバー側で再読込み・マージ・再更新を行うエンティティを指定する独自アノテーション。
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RetryOnConflict {
+
+    // 初回を含む最大試行回数
+    int maxAttempts() default 3;
+
+    // 再試行待機時間の基準値(ミリ秒)。試行ごとに倍増する
+    long backoffMillis() default 10;
+
+    // 再試行待機時間の上限(ミリ秒)
+    long maxBackoffMillis() default 200;
+}
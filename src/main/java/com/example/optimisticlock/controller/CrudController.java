@@ -1,13 +1,29 @@
 package com.example.optimisticlock.controller;
 
 import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
 import com.example.optimisticlock.service.CrudService;
+import com.example.optimisticlock.service.DeleteAllResult;
+import com.example.optimisticlock.service.KeysetPage;
+import com.example.optimisticlock.service.MultiGetResult;
+import com.example.optimisticlock.util.Json;
+import com.fasterxml.jackson.core.JsonGenerator;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 // このインタフェースはCRUD操作に共通するHTTPエンドポイントのデフォルト実装を提供する。
 public interface CrudController<T extends BaseEntity> {
@@ -29,16 +45,50 @@ public interface CrudController<T extends BaseEntity> {
         return new ResponseEntity<>(entity, HttpStatus.CREATED);
     }
 
-    @PostMapping("/findById")
+    @PostMapping("/createBatch")
+    /**
+     * 一括登録処理。各要素を検証した上でJDBCバッチで保存し、201 CREATEDを返す。
+     * @param entities 登録対象のエンティティ一覧
+     * @return 行ごとの登録件数とステータス
+     */
+    default ResponseEntity<int[]> createBatch(@RequestBody List<T> entities) {
+        RequestBodies.validateEach(entities);
+        int[] counts = getService().insertAll(entities);
+        return new ResponseEntity<>(counts, HttpStatus.CREATED);
+    }
+
     /**
      * IDに該当するエンティティを検索し、存在すれば200、なければ404を返す。
      * @param entity 検索条件を保持したエンティティ
      * @return 該当エンティティまたは404レスポンス
      */
-    default ResponseEntity<T> findById(@Valid @RequestBody T entity) {
+    default ResponseEntity<T> findById(T entity) {
+        return findById(entity, null);
+    }
+
+    @PostMapping("/findById")
+    /**
+     * IDに該当するエンティティを検索し、存在すれば楽観ロック値をETagに設定して200、なければ404を返す。
+     * If-None-Matchが現在のETagと一致する場合は、楽観ロック値のみの検索で304を返す。
+     * @param entity 検索条件を保持したエンティティ
+     * @param ifNoneMatch If-None-Matchヘッダーの値。指定がなければnull
+     * @return 該当エンティティ、304または404レスポンス
+     */
+    default ResponseEntity<T> findById(@Valid @RequestBody T entity,
+                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                       String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            String etag = ETags.format(getService().findLockValue(entity));
+            if (ETags.anyMatches(ifNoneMatch, etag)) {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setETag(etag);
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+        }
         T foundEntity = getService().findById(entity);
         if (foundEntity != null) {
-            return new ResponseEntity<>(foundEntity, HttpStatus.OK);
+            return new ResponseEntity<>(foundEntity,
+                ETags.headers(EntityMetadataRegistry.get(foundEntity.getClass()), foundEntity), HttpStatus.OK);
         }
         return new ResponseEntity<>(HttpStatus.NOT_FOUND);
     }
@@ -53,25 +103,192 @@ public interface CrudController<T extends BaseEntity> {
         return new ResponseEntity<>(entities, HttpStatus.OK);
     }
 
+    @PostMapping("/findByIds")
+    /**
+     * 複数主キーの一括検索処理。各要素を検証した上で、要求順の結果と該当なしの主キーを200で返す。
+     * @param entities 検索条件を保持したエンティティ一覧
+     * @return 取得結果とステータス
+     */
+    default ResponseEntity<MultiGetResult<T>> findByIds(@RequestBody List<T> entities) {
+        RequestBodies.validateEach(entities);
+        MultiGetResult<T> result = getService().findByIds(entities);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/findById", params = "fields")
+    /**
+     * 射影検索処理。指定フィールドと主キーのみを取得し、存在すれば200、なければ404を返す。
+     * @param entity 検索条件を保持したエンティティ
+     * @param fields 取得するプロパティ名(カンマ区切り)
+     * @return 指定フィールドのみのJSONまたは404レスポンス
+     */
+    default ResponseEntity<Map<String, Object>> findByIdProjected(@Valid @RequestBody T entity,
+                                                                  @RequestParam("fields") List<String> fields) {
+        T foundEntity = getService().findById(entity, fields);
+        if (foundEntity == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(foundEntity.getClass());
+        return new ResponseEntity<>(metadata.toMap(foundEntity, metadata.selectColumns(fields)), HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/getAll", params = "fields")
+    /**
+     * 射影全件取得処理。指定フィールドと主キーのみを取得して200で返す。
+     * @param fields 取得するプロパティ名(カンマ区切り)
+     * @return 指定フィールドのみのJSON一覧とステータス
+     */
+    default ResponseEntity<List<Map<String, Object>>> getAllProjected(@RequestParam("fields") List<String> fields) {
+        List<T> entities = getService().findAll(fields);
+        List<Map<String, Object>> body = new ArrayList<>(entities.size());
+        if (!entities.isEmpty()) {
+            EntityMetadata metadata = EntityMetadataRegistry.get(entities.get(0).getClass());
+            List<EntityMetadata.Column> projection = metadata.selectColumns(fields);
+            for (T entity : entities) {
+                body.add(metadata.toMap(entity, projection));
+            }
+        }
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    @PostMapping(value = "/getAll", params = {"stream=true", "!fields"})
+    /**
+     * 全件ストリーミング取得処理。カーソルで読み進めながらJSON配列を逐次レスポンスへ書き出す。
+     * メッセージ変換を通らないが、通常の/getAllと同じくSpring Bootが構成したObjectMapperで出力するため、各要素の表現は一致する。
+     * 書き出し開始後はステータスを変更できないため、途中のエラーは不完全なJSONとして現れる。
+     * @param response 書き出し先のレスポンス
+     * @throws IOException レスポンスへの書き出しに失敗した場合
+     */
+    default void streamAll(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = Json.mapper().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            try {
+                getService().streamAll(entity -> {
+                    try {
+                        generator.writeObject(entity);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    @PostMapping("/getPage")
+    /**
+     * ページング取得処理。主キー順に指定件数を取得し、次ページのカーソルとともに200で返す。
+     * @param cursor 前ページのnextCursor。先頭ページは省略する
+     * @param size ページサイズ
+     * @return ページ内容とステータス
+     */
+    default ResponseEntity<KeysetPage<T>> getPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                                  @RequestParam(value = "size", defaultValue = "100") int size) {
+        KeysetPage<T> page = getService().findPage(cursor, size);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+
+    @PostMapping("/cacheStats")
+    /**
+     * キャッシュ統計取得処理。ヒット・ミス・退避の件数などを200で返す。
+     * @return 統計項目名と値の対応(キャッシュ対象外の場合は空)とステータス
+     */
+    default ResponseEntity<Map<String, Object>> cacheStats() {
+        return new ResponseEntity<>(getService().getCacheStats(), HttpStatus.OK);
+    }
+
+    @PostMapping("/retryStats")
+    /**
+     * 競合再試行の統計取得処理。競合・再試行・回復・断念の件数を200で返す。
+     * @return 統計項目名と値の対応(再試行対象外の場合は空)とステータス
+     */
+    default ResponseEntity<Map<String, Object>> retryStats() {
+        return new ResponseEntity<>(getService().getRetryStats(), HttpStatus.OK);
+    }
+
+    @PostMapping("/readCoalescingStats")
+    /**
+     * 主キー検索の集約統計取得処理。検索・相乗り・待機中の件数を200で返す。
+     * @return 統計項目名と値の対応(集約対象外の場合は空)とステータス
+     */
+    default ResponseEntity<Map<String, Object>> readCoalescingStats() {
+        return new ResponseEntity<>(getService().getReadCoalescingStats(), HttpStatus.OK);
+    }
+
+    /**
+     * 更新処理。楽観ロック例外と競合時の再試行はサービス側で制御される。
+     * @param entity 更新対象のエンティティ
+     * @return 更新結果(新しい最終更新日時を反映済み)とステータス
+     */
+    default ResponseEntity<T> update(T entity) {
+        return update(entity, null);
+    }
+
     @PostMapping("/update")
     /**
-     * 更新処理。楽観ロック例外はサービス側で制御される。
+     * 更新処理。If-Matchが指定された場合は、そのETagを本文の楽観ロック値より優先して比較に使う。
+     * 楽観ロック例外と競合時の再試行はサービス側で制御される。
      * @param entity 更新対象のエンティティ
-     * @return 更新結果とステータス
+     * @param ifMatch If-Matchヘッダーの値。指定がなければnull
+     * @return 更新結果(新しい最終更新日時を反映済み)、新しいETagとステータス
      */
-    default ResponseEntity<T> update(@Valid @RequestBody T entity) {
-        getService().update(entity);
-        return new ResponseEntity<>(entity, HttpStatus.OK);
+    default ResponseEntity<T> update(@Valid @RequestBody T entity,
+                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        EntityMetadata metadata = EntityMetadataRegistry.get(entity.getClass());
+        ETags.applyIfMatch(metadata, entity, ifMatch);
+        T updated = getService().update(entity);
+        return new ResponseEntity<>(updated, ETags.headers(metadata, updated), HttpStatus.OK);
+    }
+
+    @PostMapping("/patch")
+    /**
+     * 部分更新処理。指定フィールドのみを楽観ロック付きで更新する。
+     * @param entity 更新対象のエンティティ
+     * @param fields 更新するプロパティ名(カンマ区切り)
+     * @return 更新結果(新しい最終更新日時を反映済み)とステータス
+     */
+    default ResponseEntity<T> patch(@Valid @RequestBody T entity, @RequestParam("fields") Set<String> fields) {
+        T updated = getService().patch(entity, fields);
+        return new ResponseEntity<>(updated, HttpStatus.OK);
     }
 
-    @PostMapping("/delete")
     /**
      * 削除処理。削除後は204 NO_CONTENTを返却する。
      * @param entity 削除対象のエンティティ
      * @return ステータスのみを含むレスポンス
      */
-    default ResponseEntity<Void> delete(@Valid @RequestBody T entity) {
+    default ResponseEntity<Void> delete(T entity) {
+        return delete(entity, null);
+    }
+
+    @PostMapping("/delete")
+    /**
+     * 削除処理。If-Matchが指定された場合は、そのETagを本文の楽観ロック値より優先して比較に使う。
+     * 削除後は204 NO_CONTENTを返却する。
+     * @param entity 削除対象のエンティティ
+     * @param ifMatch If-Matchヘッダーの値。指定がなければnull
+     * @return ステータスのみを含むレスポンス
+     */
+    default ResponseEntity<Void> delete(@Valid @RequestBody T entity,
+                                        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ETags.applyIfMatch(EntityMetadataRegistry.get(entity.getClass()), entity, ifMatch);
         getService().delete(entity);
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
+
+    @PostMapping("/deleteBatch")
+    /**
+     * 一括削除処理。各要素を検証した上で楽観ロック値が一致する行のみを削除し、削除件数と削除しなかった主キーを200 OKで返す。
+     * @param entities 削除対象のエンティティ一覧
+     * @return 削除結果とステータス
+     */
+    default ResponseEntity<DeleteAllResult> deleteBatch(@RequestBody List<T> entities) {
+        RequestBodies.validateEach(entities);
+        return new ResponseEntity<>(getService().deleteAll(entities), HttpStatus.OK);
+    }
 }
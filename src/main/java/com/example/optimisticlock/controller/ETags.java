@@ -0,0 +1,120 @@
+package com.example.optimisticlock.controller;
+
+import com.example.optimisticlock.repository.EntityMetadata;
+import jakarta.validation.ValidationException;
+import org.springframework.http.HttpHeaders;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+// 楽観ロック値(バージョンまたは最終更新日時)をHTTPのエンティティタグ(ETag)として扱う補助クラス。
+// タグの書き出しと読み戻しは同じ書式で行い、JSONの日時書式の設定(spring.jackson.*)には左右されない。
+final class ETags {
+
+    private static final String WEAK_PREFIX = "W/";
+
+    // 最終更新日時の書式。ミリ秒以下も欠けずに往復できるISO-8601形式
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+
+    private ETags() {
+    }
+
+    /**
+     * 楽観ロック値からエンティティタグを組み立てる。
+     * @param lockValue 楽観ロック値
+     * @return 引用符で囲んだエンティティタグ。値がない場合はnull
+     */
+    static String format(Object lockValue) {
+        return lockValue != null ? '"' + encode(lockValue) + '"' : null;
+    }
+
+    /**
+     * エンティティの現在の楽観ロック値をETagヘッダーに設定したヘッダーを作成する。
+     * @param metadata エンティティのメタデータ
+     * @param entity 対象エンティティ
+     * @return レスポンスヘッダー(楽観ロック値がない場合は空)
+     */
+    static HttpHeaders headers(EntityMetadata metadata, Object entity) {
+        HttpHeaders headers = new HttpHeaders();
+        String etag = format(metadata.getLockValue(entity));
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+        return headers;
+    }
+
+    /**
+     * If-None-Matchヘッダーのいずれかのタグが一致するかを弱い比較で判定する。
+     * @param ifNoneMatch If-None-Matchヘッダーの値
+     * @param etag 現在のエンティティタグ
+     * @return 一致する場合はtrue
+     */
+    static boolean anyMatches(String ifNoneMatch, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag) || stripWeak(tag).equals(stripWeak(etag))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * If-Matchヘッダーのタグを楽観ロック値としてエンティティへ設定し、本文の値より優先させる。
+     * 「*」の場合は本文の値をそのまま使う。
+     * @param metadata エンティティのメタデータ
+     * @param entity 更新・削除対象のエンティティ
+     * @param ifMatch If-Matchヘッダーの値。指定がなければnull
+     * @throws ValidationException 単一の強いタグでない場合、または楽観ロック値へ変換できない場合
+     */
+    static void applyIfMatch(EntityMetadata metadata, Object entity, String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || tag.charAt(0) != '"' || tag.charAt(tag.length() - 1) != '"'
+            || tag.indexOf(',') >= 0 || metadata.getLockValueType() == null) {
+            throw new ValidationException("If-Match must be a single strong entity tag: " + ifMatch);
+        }
+        Object lockValue;
+        try {
+            lockValue = decode(tag.substring(1, tag.length() - 1), metadata.getLockValueType());
+        } catch (IllegalArgumentException | DateTimeParseException ex) {
+            throw new ValidationException("Invalid entity tag: " + ifMatch);
+        }
+        metadata.setLockValue(entity, lockValue);
+    }
+
+    private static String encode(Object lockValue) {
+        return lockValue instanceof LocalDateTime ? DATE_TIME.format((LocalDateTime) lockValue) : lockValue.toString();
+    }
+
+    /**
+     * formatで書き出したタグの中身を楽観ロック値へ戻す。
+     * @param text 引用符を除いたタグ
+     * @param type 楽観ロック値の型
+     * @return 楽観ロック値
+     * @throws IllegalArgumentException 数値として解釈できない場合、または対応していない型の場合
+     * @throws DateTimeParseException 日時として解釈できない場合
+     */
+    private static Object decode(String text, Class<?> type) {
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.parse(text, DATE_TIME);
+        }
+        if (type == Long.class || type == long.class) {
+            return Long.valueOf(text);
+        }
+        if (type == Integer.class || type == int.class) {
+            return Integer.valueOf(text);
+        }
+        throw new IllegalArgumentException("Unsupported lock value type: " + type.getName());
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag;
+    }
+}
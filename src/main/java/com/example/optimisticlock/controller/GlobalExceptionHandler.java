@@ -11,6 +11,8 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.Objects;
 
@@ -19,8 +21,15 @@ import java.util.Objects;
 public class GlobalExceptionHandler {
 
     @ExceptionHandler(OptimisticLockException.class)
-    public ResponseEntity<String> handleOptimisticLockException(OptimisticLockException ex) {
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+    public ResponseEntity<Object> handleOptimisticLockException(OptimisticLockException ex) {
+        if (ex.getConflictKeys().isEmpty()) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.CONFLICT);
+        }
+        // 競合キーが分かる場合は、クライアントが該当行だけを再取得できるよう本文に含める(JSONへの変換はSpring MVCに任せる)
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("message", ex.getMessage());
+        body.put("conflictKeys", ex.getConflictKeys());
+        return new ResponseEntity<>(body, HttpStatus.CONFLICT);
     }
 
     @ExceptionHandler({ConstraintViolationException.class, ValidationException.class})
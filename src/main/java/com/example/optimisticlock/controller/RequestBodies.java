@@ -0,0 +1,40 @@
+package com.example.optimisticlock.controller;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
+import jakarta.validation.ValidationException;
+import jakarta.validation.Validator;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// リクエストボディのリストに含まれる各要素を検証する補助クラス。
+// @Valid付きのList引数ではリスト自体しか検証されず、要素の制約(@EntityConfiguredなど)が評価されないため要素ごとに検証する。
+final class RequestBodies {
+
+    private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private RequestBodies() {
+    }
+
+    /**
+     * リストの各要素を検証し、違反があればまとめて例外とする。
+     * @param elements 検証対象
+     * @throws ValidationException nullの要素を含む場合
+     * @throws ConstraintViolationException 制約に違反する要素がある場合
+     */
+    static void validateEach(List<?> elements) {
+        Set<ConstraintViolation<Object>> violations = new LinkedHashSet<>();
+        for (Object element : elements) {
+            if (element == null) {
+                throw new ValidationException("Request body must not contain null elements");
+            }
+            violations.addAll(VALIDATOR.validate(element));
+        }
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+    }
+}
@@ -19,6 +19,6 @@ public abstract class BaseEntity {
     // 最終更新者名
     private String zzcmnFname;
 
-    // 最終更新日時
+    // 最終更新日時(楽観ロックにミリ秒まで使うため、カラムはDATETIME(3)以上とする)
     private LocalDateTime zzcmnFdate;
 }
@@ -1,9 +1,29 @@
 package com.example.optimisticlock.exception;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
 // 楽観ロックが衝突した際に投げられるドメイン例外。
 public class OptimisticLockException extends RuntimeException {
 
+    // 競合したレコードの主キー(プロパティ名と値の対応)
+    private final List<Map<String, Object>> conflictKeys;
+
     public OptimisticLockException(String message) {
+        this(message, Collections.emptyList());
+    }
+
+    public OptimisticLockException(String message, List<Map<String, Object>> conflictKeys) {
         super(message);
+        this.conflictKeys = Collections.unmodifiableList(conflictKeys);
+    }
+
+    /**
+     * 競合したレコードの主キー一覧を取得する。特定できない場合は空リスト。
+     * @return 競合キー一覧
+     */
+    public List<Map<String, Object>> getConflictKeys() {
+        return conflictKeys;
     }
 }
@@ -2,8 +2,13 @@ package com.example.optimisticlock.repository;
 
 import com.example.optimisticlock.entity.BaseEntity;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 // 全エンティティに共通するCRUD操作を定義するマッパーインタフェース。
 public interface BaseRepository<T extends BaseEntity> {
@@ -16,22 +21,59 @@ public interface BaseRepository<T extends BaseEntity> {
      */
     int insert(T entity);
 
+    @InsertProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 複数エンティティを複数行INSERTでまとめて登録する。
+     * @param entities 登録対象(1件以上)
+     * @return 影響件数
+     */
+    int insertAll(@Param("list") List<T> entities);
+
     @UpdateProvider(type = BaseRepositoryProvider.class)
     /**
-     * エンティティを更新する。
+     * 最終更新日時が一致する場合のみエンティティを更新する。
      * @param entity 更新対象
-     * @return 影響件数
+     * @param nextZzcmnFdate 更新後の最終更新日時(DATETIME(3)のカラムへそのまま書き込む)
+     * @return 影響件数(競合時は0)
      */
-    int update(T entity);
+    int update(@Param("entity") T entity, @Param("nextZzcmnFdate") LocalDateTime nextZzcmnFdate);
+
+    @UpdateProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 楽観ロック値が一致する場合のみ、指定フィールドだけを更新する。
+     * @param entity 更新対象
+     * @param fields 更新するプロパティ名(主キー・監査項目・バージョンは指定不可)
+     * @param nextZzcmnFdate 更新後の最終更新日時
+     * @return 影響件数(競合時は0)
+     */
+    int patch(@Param("entity") T entity, @Param("fields") Collection<String> fields,
+              @Param("nextZzcmnFdate") LocalDateTime nextZzcmnFdate);
+
+    @InsertProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 未登録なら登録し、登録済みなら楽観ロック値が一致する場合のみ更新する。
+     * @param entity 登録・更新対象
+     * @param nextZzcmnFdate 登録・更新後の最終更新日時
+     * @return 影響件数(登録時1、更新時2、競合時1。登録と競合は最終更新日時を読み直して判別する)
+     */
+    int upsert(@Param("entity") T entity, @Param("nextZzcmnFdate") LocalDateTime nextZzcmnFdate);
 
     @DeleteProvider(type = BaseRepositoryProvider.class)
     /**
-     * エンティティを削除する。
+     * 最終更新日時が一致する場合のみエンティティを削除する。
      * @param entity 削除対象
-     * @return 影響件数
+     * @return 影響件数(競合時は0)
      */
     int delete(T entity);
 
+    @DeleteProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 主キーと楽観ロック値の組が一致するエンティティを1文でまとめて削除する。
+     * @param entities 削除対象(1件以上)
+     * @return 影響件数
+     */
+    int deleteAll(@Param("list") List<T> entities);
+
     @SelectProvider(type = BaseRepositoryProvider.class)
     /**
      * ID条件で単一エンティティを取得する。
@@ -47,6 +89,50 @@ public interface BaseRepository<T extends BaseEntity> {
      */
     List<T> findAll();
 
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 複数の主キーに該当するエンティティを1文でまとめて取得する。
+     * @param entities 検索条件となるエンティティ(1件以上)
+     * @return 該当エンティティ一覧(順不同、該当なしの主キーは含まれない)
+     */
+    List<T> findByIds(@Param("list") List<T> entities);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * ID条件で単一エンティティの指定フィールドのみを取得する。
+     * @param entity 検索条件となるエンティティ
+     * @param fields 取得するプロパティ名(主キーは常に含まれる)
+     * @return 指定フィールドのみを設定したエンティティ
+     */
+    T findByIdProjected(@Param("entity") T entity, @Param("fields") Collection<String> fields);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 全件の指定フィールドのみを取得する。
+     * @param fields 取得するプロパティ名(主キーは常に含まれる)
+     * @return 指定フィールドのみを設定したエンティティ一覧
+     */
+    List<T> findAllProjected(@Param("fields") Collection<String> fields);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 主キー順のキーセットページングで1ページ分を取得する。
+     * @param cursor 直前ページ末尾の主キー(プロパティ名と値)。先頭ページはnull
+     * @param limit 取得件数の上限
+     * @return エンティティ一覧(主キー昇順)
+     */
+    List<T> findPage(@Param("cursor") Map<String, Object> cursor, @Param("limit") int limit);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    /**
+     * 全件を1行ずつ読み進めるカーソルで取得する。
+     * MySQLドライバーのストリーミング(fetchSize = Integer.MIN_VALUE)で読むため、接続設定のuseCursorFetchは不要。
+     * 読み終えるまで同じ接続で他の文は実行できないため、トランザクション内で使用し、読み終えたらクローズすること。
+     * @return エンティティのカーソル
+     */
+    Cursor<T> streamAll();
+
     @SelectProvider(type = BaseRepositoryProvider.class)
     /**
      * 単一エンティティの楽観ロック条件を検証する。
@@ -61,5 +147,48 @@ public interface BaseRepository<T extends BaseEntity> {
      * @param entities 検証対象リスト
      * @return 条件に合致した件数
      */
-    int checkUpdateList(List<T> entities);
+    int checkUpdateList(@Param("list") List<T> entities);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 指定エンティティの主キーと現在の最終更新日時のみを取得する。
+     * @param entities 検索対象(1件以上)
+     * @return 主キーと最終更新日時だけを設定したエンティティ一覧
+     */
+    List<T> findLockValues(@Param("list") List<T> entities);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 指定エンティティの主キーと現在の最終更新日時のみを取得する。@Versionを持つエンティティでも最終更新日時カラムを読む。
+     * @param entities 検索対象(1件以上)
+     * @return 主キーと最終更新日時だけを設定したエンティティ一覧
+     */
+    List<T> findStamps(@Param("list") List<T> entities);
+
+    @UpdateProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 大量件数の楽観ロック検証に使う一時テーブルを作成する。
+     */
+    void createLockCheckTable();
+
+    @InsertProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 一時テーブルへ検証対象の主キーと最終更新日時を登録する。
+     * @param entities 検証対象(1件以上)
+     * @return 登録件数
+     */
+    int insertLockCheckRows(@Param("list") List<T> entities);
+
+    @SelectProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 一時テーブルと突き合わせ、楽観ロック条件に合致する件数を取得する。
+     * @return 条件に合致した件数
+     */
+    int countLockCheckMatches();
+
+    @UpdateProvider(type = BaseRepositoryProvider.class)
+    /**
+     * 楽観ロック検証用の一時テーブルを削除する。
+     */
+    void dropLockCheckTable();
 }
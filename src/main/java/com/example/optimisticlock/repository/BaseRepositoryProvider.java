@@ -1,25 +1,16 @@
 package com.example.optimisticlock.repository;
 
-import com.example.optimisticlock.annotation.TableName;
 import com.example.optimisticlock.entity.BaseEntity;
-import javax.persistence.Id;
-import org.apache.ibatis.builder.annotation.ProviderContext;
-import org.apache.ibatis.jdbc.SQL;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.builder.annotation.ProviderContext;
+import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
-
-
-import org.apache.ibatis.builder.annotation.ProviderMethodResolver;
+import java.util.Map;
 
 // MyBatisの@*Providerから呼び出される共通SQLビルダー。
+// SQLはEntityMetadataRegistryでエンティティごとに事前生成したものを返す。
 public class BaseRepositoryProvider implements ProviderMethodResolver {
 
     /**
@@ -28,82 +19,63 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @return INSERT文
      */
     public String insert(BaseEntity entity) {
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
+        return metadataOf(entity).getInsertSql();
+    }
 
-        return new SQL() {{
-            INSERT_INTO(tableName);
-            for (Field field : getAllFields(entityClass)) {
-                VALUES(camelToSnake(field.getName()), "#{" + field.getName() + "}");
-            }
-        }}.toString();
+    /**
+     * 複数エンティティを1文で登録する複数行INSERTを生成する。
+     * @param entities 登録対象エンティティのリスト
+     * @return INSERT文
+     */
+    public String insertAll(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getInsertAllSql(entities.size());
     }
 
     /**
      * 更新者情報とタイムスタンプを反映しながら指定エンティティを更新するSQLを生成する。
+     * 最終更新日時が一致する場合のみ更新する楽観ロック付きの文となる。
      * @param entity 更新対象のエンティティ
      * @return UPDATE文
      */
-    public String update(BaseEntity entity) {
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
-
-        List<Field> idFields = findIdFields(entityClass);
-
-        return new SQL() {{
-            UPDATE(tableName);
-
-            String setClauses = Arrays.stream(getAllFields(entityClass))
-                .filter(field -> !field.isAnnotationPresent(Id.class))
-                .filter(field -> !field.getName().equals("zzcmnFdate"))
-                .filter(field -> !field.getName().equals("zzcmnCname"))
-                .filter(field -> !field.getName().equals("zzcmnCdate"))
-                .map(field -> camelToSnake(field.getName()) + " = #{" + field.getName() + "}")
-                .collect(Collectors.joining(", "));
+    public String update(@Param("entity") BaseEntity entity) {
+        return metadataOf(entity).getUpdateSql();
+    }
 
-            SET(setClauses);
-            SET("ZZCMN_FDATE = NOW()");
+    /**
+     * 指定フィールドのみを更新する楽観ロック付きSQLを生成する。
+     * @param entity 更新対象のエンティティ
+     * @param fields 更新するプロパティ名
+     * @return UPDATE文
+     */
+    public String patch(@Param("entity") BaseEntity entity, @Param("fields") Collection<String> fields) {
+        return metadataOf(entity).getPatchSql(fields);
+    }
 
-            for (Field idField : idFields) {
-                String idColumnName = camelToSnake(idField.getName());
-                String idFieldName = idField.getName();
-                WHERE(idColumnName + " = #{" + idFieldName + "}");
-            }
-        }}.toString();
+    /**
+     * 未登録なら登録し、登録済みなら楽観ロック条件が一致する場合のみ更新するSQLを生成する。
+     * @param entity 登録・更新対象のエンティティ
+     * @return INSERT ... ON DUPLICATE KEY UPDATE文
+     */
+    public String upsert(@Param("entity") BaseEntity entity) {
+        return metadataOf(entity).getUpsertSql();
     }
 
     /**
-     * 主キーに基づいてレコードを削除するSQLを生成する。
+     * 主キーと最終更新日時に基づいてレコードを削除するSQLを生成する。
      * @param entity 削除対象のエンティティ
      * @return DELETE文
      */
     public String delete(BaseEntity entity) {
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
-
-        List<Field> idFields = findIdFields(entityClass);
-
-        return new SQL() {{
-            DELETE_FROM(tableName);
+        return metadataOf(entity).getDeleteSql();
+    }
 
-            for (Field idField : idFields) {
-                String idColumnName = camelToSnake(idField.getName());
-                String idFieldName = idField.getName();
-                WHERE(idColumnName + " = #{" + idFieldName + "}");
-            }
-        }}.toString();
+    /**
+     * 主キーと最終更新日時の組が一致するレコードをまとめて削除するSQLを生成する。
+     * @param entities 削除対象エンティティのリスト
+     * @return DELETE文
+     */
+    public String deleteAll(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getDeleteAllSql(entities.size());
     }
 
     /**
@@ -112,19 +84,7 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @return SELECT文
      */
     public String findById(BaseEntity entity) {
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
-
-        SQL sql = new SQL().SELECT("*").FROM(tableName);
-        List<Field> idFields = findIdFields(entityClass);
-        for (Field idField : idFields) {
-            sql.WHERE(camelToSnake(idField.getName()) + " = #{" + idField.getName() + "}");
-        }
-        return sql.toString();
+        return metadataOf(entity).getFindByIdSql();
     }
 
     /**
@@ -133,66 +93,57 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @return SELECT文
      */
     public String findAll(ProviderContext context) {
-        Class<?> entityClass = getEntityClass(context);
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
+        return EntityMetadataRegistry.get(getEntityClass(context)).getFindAllSql();
+    }
 
-        return new SQL() {{
-            SELECT("*");
-            FROM(tableName);
-        }}.toString();
+    /**
+     * 複数の主キー条件でレコードをまとめて検索するSQLを生成する。
+     * @param entities 検索条件を保持するエンティティのリスト
+     * @return SELECT文
+     */
+    public String findByIds(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getFindByIdsSql(entities.size());
     }
 
+    /**
+     * 主キー条件で単一レコードの指定カラムのみを検索するSQLを生成する。
+     * @param entity 検索条件を保持するエンティティ
+     * @param fields 取得するプロパティ名
+     * @return SELECT文
+     */
+    public String findByIdProjected(@Param("entity") BaseEntity entity, @Param("fields") Collection<String> fields) {
+        return metadataOf(entity).getFindByIdSql(fields);
+    }
 
     /**
-     * 継承階層も含めて@Idが付与されたフィールドを収集する。
-     * @param clazz 解析対象のクラス
-     * @return @Idフィールドのリスト
+     * 全件の指定カラムのみを取得するSQLを生成する。
+     * @param fields 取得するプロパティ名
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return SELECT文
      */
-    private List<Field> findIdFields(Class<?> clazz) {
-        List<Field> idFields = new ArrayList<>();
-        for (Field field : getAllFields(clazz)) {
-            if (field.isAnnotationPresent(Id.class)) {
-                idFields.add(field);
-            }
-        }
-        if (idFields.isEmpty()) {
-            throw new RepositoryConfigurationException("repository.idMissing", clazz.getName());
-        }
-        return idFields;
+    public String findAllProjected(@Param("fields") Collection<String> fields, ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getFindAllSql(fields);
     }
 
     /**
-     * 指定クラスとスーパークラスから全フィールドリストを取得する。
-     * @param clazz 解析対象のクラス
-     * @return フィールド配列
+     * 主キー順のキーセットページングで1ページ分を取得するSQLを生成する。
+     * @param cursor 直前ページ末尾の主キー。先頭ページはnull
+     * @param limit 取得件数の上限
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return SELECT文
      */
-    private Field[] getAllFields(Class<?> clazz) {
-        List<Field> fields = new ArrayList<>();
-        while (clazz != null) {
-            Arrays.stream(clazz.getDeclaredFields())
-                .filter(field -> !Modifier.isStatic(field.getModifiers()))
-                .filter(field -> !field.isSynthetic())
-                .filter(field -> !field.getName().startsWith("$jacoco"))
-                .forEach(fields::add);
-            clazz = clazz.getSuperclass();
-        }
-        return fields.toArray(new Field[0]);
+    public String findPage(@Param("cursor") Map<String, Object> cursor, @Param("limit") int limit,
+                           ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getFindPageSql(cursor != null);
     }
 
     /**
-     * camelCaseのプロパティ名をスネークケースのカラム名へ変換する。
-     * @param str プロパティ名
-     * @return スネークケースへ変換した文字列
+     * カーソルで全件を読み進めるためのSQLを生成する。全件取得と同じ文を用いる。
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return SELECT文
      */
-    private static String camelToSnake(String str) {
-        if (str == null) {
-            return null;
-        }
-        return str.replaceAll("([a-z])([A-Z]+)", "$1_$2").toUpperCase();
+    public String streamAll(ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getFindAllSql();
     }
 
     /**
@@ -201,27 +152,7 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @return SELECT文
      */
     public String checkUpdate(BaseEntity entity) {
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
-
-        List<Field> idFields = findIdFields(entityClass);
-
-        return new SQL() {{
-            SELECT("count(1)");
-            FROM(tableName);
-
-            for (Field idField : idFields) {
-                String idColumnName = camelToSnake(idField.getName());
-                String idFieldName = idField.getName();
-                WHERE(idColumnName + " = #{" + idFieldName + "}");
-            }
-
-            WHERE("ZZCMN_FDATE = #{zzcmnFdate}");
-        }}.toString();
+        return metadataOf(entity).getCheckUpdateSql();
     }
 
     /**
@@ -229,45 +160,65 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @param entities 楽観ロック検証対象エンティティのリスト
      * @return SELECT文
      */
-    public String checkUpdateList(List<BaseEntity> entities) {
+    public String checkUpdateList(@Param("list") List<BaseEntity> entities) {
         if (entities == null || entities.isEmpty()) {
             return "SELECT 0";
         }
+        return metadataOf(entities.get(0)).getCheckUpdateListSql(entities.size());
+    }
 
-        BaseEntity entity = entities.get(0);
-        Class<?> entityClass = entity.getClass();
-        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
-        if (tableNameAnnotation == null) {
-            throw new RepositoryConfigurationException("repository.tableNameMissing", entityClass.getName());
-        }
-        String tableName = tableNameAnnotation.value();
-
-        List<Field> idFields = findIdFields(entityClass);
+    /**
+     * 指定エンティティの主キーと現在の最終更新日時を取得するSELECTを生成する。
+     * @param entities 検証対象エンティティのリスト
+     * @return SELECT文
+     */
+    public String findLockValues(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getFindLockValuesSql(entities.size());
+    }
 
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(1) FROM ").append(tableName).append(" WHERE ");
+    /**
+     * 指定エンティティの主キーと現在の最終更新日時(@Versionの有無によらない)を取得するSELECTを生成する。
+     * @param entities 検索対象エンティティのリスト
+     * @return SELECT文
+     */
+    public String findStamps(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getFindStampsSql(entities.size());
+    }
 
-        StringBuilder whereClause = new StringBuilder();
-        whereClause.append("(");
+    /**
+     * 大量件数の楽観ロック検証に使う一時テーブルを作成するSQLを生成する。
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return CREATE TEMPORARY TABLE文
+     */
+    public String createLockCheckTable(ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getCreateLockCheckTableSql();
+    }
 
-        for (int i = 0; i < entities.size(); i++) {
-            if (i > 0) {
-                whereClause.append(" OR ");
-            }
-            whereClause.append("(");
-            List<String> conditions = new ArrayList<>();
-            for (Field idField : idFields) {
-                conditions.add(camelToSnake(idField.getName()) + " = #{list[" + i + "]." + idField.getName() + "}");
-            }
-            conditions.add("ZZCMN_FDATE = #{list[" + i + "].zzcmnFdate}");
-            whereClause.append(String.join(" AND ", conditions));
-            whereClause.append(")");
-        }
-        whereClause.append(")");
+    /**
+     * 一時テーブルへ検証対象の主キーと最終更新日時を登録するSQLを生成する。
+     * @param entities 検証対象エンティティのリスト
+     * @return INSERT文
+     */
+    public String insertLockCheckRows(@Param("list") List<BaseEntity> entities) {
+        return metadataOf(entities.get(0)).getInsertLockCheckRowsSql(entities.size());
+    }
 
-        sql.append(whereClause);
+    /**
+     * 一時テーブルと結合して楽観ロック条件に合致する件数を数えるSQLを生成する。
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return SELECT文
+     */
+    public String countLockCheckMatches(ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getCountLockCheckMatchesSql();
+    }
 
-        return sql.toString();
+    /**
+     * 楽観ロック検証用の一時テーブルを削除するSQLを生成する。
+     * @param context MyBatisが提供するプロバイダーコンテキスト
+     * @return DROP文
+     */
+    public String dropLockCheckTable(ProviderContext context) {
+        return EntityMetadataRegistry.get(getEntityClass(context)).getDropLockCheckTableSql();
     }
 
     /**
@@ -276,33 +227,15 @@ public class BaseRepositoryProvider implements ProviderMethodResolver {
      * @return エンティティクラス
      */
     protected Class<?> getEntityClass(ProviderContext context) {
-        // Every repository is expected to implement BaseRepository<T>; walk the type hierarchy until we find that T.
-        for (Class<?> type = context.getMapperType(); type != null; type = type.getSuperclass()) {
-            for (Type genericInterface : type.getGenericInterfaces()) {
-                Class<?> entityClass = resolveEntityClass(genericInterface);
-                if (entityClass != null) {
-                    return entityClass;
-                }
-            }
-        }
-        throw new RepositoryConfigurationException("repository.entityClassUnknown", context.getMapperType().getName());
+        return EntityMetadataRegistry.resolveEntityClass(context.getMapperType());
     }
 
     /**
-     * BaseRepository<T>型からエンティティクラスを抽出する補助メソッド。
-     * @param candidate 解析対象の型情報
-     * @return 抽出されたエンティティクラス、存在しない場合はnull
+     * エンティティの実行時クラスに対応するメタデータを取得する。
+     * @param entity 対象エンティティ
+     * @return メタデータ
      */
-    private Class<?> resolveEntityClass(Type candidate) {
-        if (candidate instanceof ParameterizedType) {
-            ParameterizedType parameterizedType = (ParameterizedType) candidate;
-            if (BaseRepository.class.equals(parameterizedType.getRawType())) {
-                Type actualType = parameterizedType.getActualTypeArguments()[0];
-                if (actualType instanceof Class) {
-                    return (Class<?>) actualType;
-                }
-            }
-        }
-        return null;
+    private EntityMetadata metadataOf(BaseEntity entity) {
+        return EntityMetadataRegistry.get(entity.getClass());
     }
 }
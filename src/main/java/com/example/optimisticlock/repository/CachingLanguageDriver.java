@@ -0,0 +1,43 @@
+package com.example.optimisticlock.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// @*Providerが返したSQLの解析結果(SqlSource)を、SQL文字列とパラメータ型ごとに再利用する言語ドライバー。
+// MyBatisはプロバイダー呼び出しのたびに#{}を解析し直すため、mybatis.default-scripting-language-driverに指定して使う。
+public class CachingLanguageDriver extends XMLLanguageDriver {
+
+    // パラメータ型ごとに保持するSqlSourceの上限
+    private static final long MAXIMUM_SIZE = 4096;
+
+    private final ConcurrentMap<Class<?>, Cache<String, SqlSource>> sources = new ConcurrentHashMap<>();
+
+    /**
+     * SQL文字列とパラメータ型が同じなら解析済みのSqlSourceを返す。
+     * 解析結果はパラメータ型に依存するため、パラメータ型ごとにキャッシュを分ける。
+     * @param configuration MyBatisの設定
+     * @param script SQL文字列
+     * @param parameterType パラメータの型
+     * @return SqlSource
+     */
+    @Override
+    public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
+        Class<?> key = parameterType != null ? parameterType : Object.class;
+        Cache<String, SqlSource> cache = sources.get(key);
+        if (cache == null) {
+            cache = sources.computeIfAbsent(key, type -> Caffeine.newBuilder().maximumSize(MAXIMUM_SIZE).build());
+        }
+        SqlSource source = cache.getIfPresent(script);
+        if (source == null) {
+            source = super.createSqlSource(configuration, script, parameterType);
+            cache.put(script, source);
+        }
+        return source;
+    }
+}
@@ -0,0 +1,1252 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import org.apache.ibatis.jdbc.SQL;
+
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// エンティティクラスごとのテーブル名・カラム構成・定型SQLを一度だけ解析して保持するメタデータ。
+public final class EntityMetadata {
+
+    // @Versionがない場合に楽観ロックへ利用する最終更新日時カラム
+    static final String LOCK_COLUMN = "ZZCMN_FDATE";
+
+    // 最終更新日時に対応するプロパティ名
+    static final String LOCK_PROPERTY = "zzcmnFdate";
+
+    // 更新後の最終更新日時をバインドするパラメータ名(マッパーの@Param)
+    static final String NEXT_LOCK_PROPERTY = "nextZzcmnFdate";
+
+    // 更新後の最終更新日時の式。DB時刻へフォールバックせず、常にアプリ側で採番した値を書き込む
+    private static final String NEXT_LOCK_VALUE = "#{" + NEXT_LOCK_PROPERTY + "}";
+
+    // update・patch・upsertでエンティティをバインドするパラメータ名の接頭辞
+    private static final String ENTITY_PREFIX = "entity.";
+
+    // UPDATE時に値を書き換えない監査プロパティ
+    private static final Set<String> AUDIT_PROPERTIES = new HashSet<>(Arrays.asList(
+        "zzcmnCname",
+        "zzcmnCdate",
+        LOCK_PROPERTY
+    ));
+
+    // 件数ごとのSQLを保持する上限。件数に比例して長くなるため少なめにする
+    private static final int SIZED_SHAPE_LIMIT = 64;
+
+    // フィールドの組み合わせごとのSQLを保持する上限。超えた組み合わせは都度生成する
+    private static final int FIELD_SHAPE_LIMIT = 256;
+
+    private static final Pattern CAMEL_BOUNDARY = Pattern.compile("([a-z])([A-Z]+)");
+
+    private final Class<?> entityClass;
+    private final String entityName;
+    private final String tableName;
+    private final GeneratedMetadata generated;
+    private final List<Column> columns;
+    private final Map<String, Column> columnsByProperty;
+    private final List<Column> idColumns;
+    private final List<Column> auditColumns;
+    private final Column versionColumn;
+    private final String lockColumn;
+    private final String lockProperty;
+
+    private final String insertSql;
+    private final String insertAllPrefix;
+    private final String updateSql;
+    private final String upsertSql;
+    private final String deleteSql;
+    private final String findByIdSql;
+    private final String findAllSql;
+    private final String findFirstPageSql;
+    private final String findNextPageSql;
+    private final String checkUpdateSql;
+    private final String checkUpdateListPrefix;
+    private final String idTupleColumns;
+    private final String lockTupleColumns;
+    private final String lockCheckTable;
+
+    private final SqlShapeCache<Integer> insertAllShapes = new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildInsertAllSql);
+    private final SqlShapeCache<Integer> checkUpdateListShapes =
+        new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildCheckUpdateListSql);
+    private final SqlShapeCache<Integer> deleteAllShapes = new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildDeleteAllSql);
+    private final SqlShapeCache<Integer> findLockValuesShapes =
+        new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildFindLockValuesSql);
+    private final SqlShapeCache<Integer> findStampsShapes = new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildFindStampsSql);
+    private final SqlShapeCache<Integer> findByIdsShapes = new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildFindByIdsSql);
+    private final SqlShapeCache<Integer> insertLockCheckRowsShapes =
+        new SqlShapeCache<>(SIZED_SHAPE_LIMIT, this::buildInsertLockCheckRowsSql);
+    private final SqlShapeCache<List<Column>> patchShapes =
+        new SqlShapeCache<>(FIELD_SHAPE_LIMIT, this::buildUpdateSql);
+    private final SqlShapeCache<List<Column>> findByIdProjectedShapes =
+        new SqlShapeCache<>(FIELD_SHAPE_LIMIT, this::buildFindByIdSql);
+    private final SqlShapeCache<List<Column>> findAllProjectedShapes =
+        new SqlShapeCache<>(FIELD_SHAPE_LIMIT, this::buildFindAllSql);
+
+    /**
+     * エンティティクラスを解析し、カラム情報と定型SQLを構築する。
+     * 設定不備があっても例外は投げず、該当SQLの取得時に検出する。
+     * 生成済みメタデータがあれば、カラム構成・値の読み書き・定型SQLはそちらを利用する。
+     * @param entityClass 解析対象のエンティティクラス
+     */
+    EntityMetadata(Class<?> entityClass) {
+        this(entityClass, tableNameOf(entityClass));
+    }
+
+    private EntityMetadata(Class<?> entityClass, String tableName) {
+        this(entityClass, tableName, GeneratedSql.load(entityClass, tableName));
+    }
+
+    private EntityMetadata(Class<?> entityClass, String tableName, GeneratedMetadata generated) {
+        this(entityClass, entityClass.getName(), tableName,
+            generated != null ? generated.columns() : columnsOf(entityClass), generated);
+    }
+
+    /**
+     * コンパイル時に解析したカラム構成からメタデータを構築する。アノテーションプロセッサーから利用する。
+     * @param entityName エンティティの完全修飾名
+     * @param tableName テーブル名。@TableNameがない場合はnull
+     * @param allColumns 継承階層を含む全カラム
+     */
+    EntityMetadata(String entityName, String tableName, List<Column> allColumns) {
+        this(null, entityName, tableName, allColumns, null);
+    }
+
+    private EntityMetadata(Class<?> entityClass, String entityName, String tableName, List<Column> allColumns,
+                           GeneratedMetadata generated) {
+        this.entityClass = entityClass;
+        this.entityName = entityName;
+        this.tableName = tableName;
+        this.generated = generated;
+        this.columns = Collections.unmodifiableList(allColumns);
+        Map<String, Column> byProperty = new LinkedHashMap<>();
+        for (Column column : allColumns) {
+            byProperty.put(column.getProperty(), column);
+        }
+        this.columnsByProperty = Collections.unmodifiableMap(byProperty);
+        this.idColumns = Collections.unmodifiableList(allColumns.stream()
+            .filter(Column::isId)
+            .collect(Collectors.toList()));
+        this.auditColumns = Collections.unmodifiableList(allColumns.stream()
+            .filter(column -> AUDIT_PROPERTIES.contains(column.getProperty()))
+            .collect(Collectors.toList()));
+        this.versionColumn = allColumns.stream()
+            .filter(Column::isVersion)
+            .findFirst()
+            .orElse(null);
+        this.lockColumn = versionColumn != null ? versionColumn.getColumn() : LOCK_COLUMN;
+        this.lockProperty = versionColumn != null ? versionColumn.getProperty() : LOCK_PROPERTY;
+        Map<String, String> statements = generated != null ? generated.statements() : Collections.emptyMap();
+
+        if (tableName == null) {
+            this.insertSql = null;
+            this.insertAllPrefix = null;
+            this.findAllSql = null;
+        } else {
+            this.insertSql = generatedOr(statements, GeneratedSql.INSERT, this::buildInsertSql);
+            this.insertAllPrefix = "INSERT INTO " + tableName + " (" + columns.stream()
+                .map(Column::getColumn)
+                .collect(Collectors.joining(", ")) + ") VALUES ";
+            this.findAllSql = generatedOr(statements, GeneratedSql.FIND_ALL, this::buildFindAllSql);
+        }
+
+        if (tableName == null || idColumns.isEmpty()) {
+            this.updateSql = null;
+            this.upsertSql = null;
+            this.deleteSql = null;
+            this.findByIdSql = null;
+            this.findFirstPageSql = null;
+            this.findNextPageSql = null;
+            this.checkUpdateSql = null;
+            this.checkUpdateListPrefix = null;
+            this.idTupleColumns = null;
+            this.lockTupleColumns = null;
+            this.lockCheckTable = null;
+        } else {
+            this.updateSql = generatedOr(statements, GeneratedSql.UPDATE, this::buildUpdateSql);
+            this.upsertSql = generatedOr(statements, GeneratedSql.UPSERT, this::buildUpsertSql);
+            this.deleteSql = generatedOr(statements, GeneratedSql.DELETE, this::buildDeleteSql);
+            this.findByIdSql = generatedOr(statements, GeneratedSql.FIND_BY_ID, this::buildFindByIdSql);
+            this.findFirstPageSql = generatedOr(statements, GeneratedSql.FIND_FIRST_PAGE, () -> buildFindPageSql(false));
+            this.findNextPageSql = generatedOr(statements, GeneratedSql.FIND_NEXT_PAGE, () -> buildFindPageSql(true));
+            this.checkUpdateSql = generatedOr(statements, GeneratedSql.CHECK_UPDATE, this::buildCheckUpdateSql);
+            this.idTupleColumns = idTupleColumnsOf(idColumns);
+            this.lockTupleColumns = idTupleColumns + ", " + lockColumn;
+            this.checkUpdateListPrefix = "SELECT COUNT(1) FROM " + tableName
+                + " WHERE (" + lockTupleColumns + ") IN (";
+            this.lockCheckTable = "tmp_lock_check_" + tableName.replaceAll("[^A-Za-z0-9_]", "_");
+        }
+    }
+
+    /**
+     * 解析対象のエンティティクラスを取得する。
+     * @return エンティティクラス。コンパイル時に構築した場合はnull
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * EntityMetadataProcessorが生成したアクセサーでカラム値を読み書きするかを判定する。
+     * @return 生成済みメタデータを利用している場合はtrue
+     */
+    public boolean isGenerated() {
+        return generated != null;
+    }
+
+    /**
+     * 生成済みのコンストラクタ呼び出しでエンティティを生成する処理を取得する。
+     * @return 生成処理。生成済みメタデータがない場合はnull
+     */
+    Supplier<Object> getInstantiator() {
+        return generated != null ? generated::newInstance : null;
+    }
+
+    /**
+     * @TableNameが付与されているかを判定する。
+     * @return 付与されていればtrue
+     */
+    public boolean hasTableName() {
+        return tableName != null;
+    }
+
+    /**
+     * @Idが付与されたフィールドが存在するかを判定する。
+     * @return 存在すればtrue
+     */
+    public boolean hasIdColumns() {
+        return !idColumns.isEmpty();
+    }
+
+    /**
+     * テーブル名を取得する。
+     * @return テーブル名
+     * @throws RepositoryConfigurationException @TableNameが付与されていない場合
+     */
+    public String getTableName() {
+        requireTableName();
+        return tableName;
+    }
+
+    /**
+     * 継承階層を含む全カラムを宣言順に取得する。
+     * @return カラム一覧
+     */
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    /**
+     * 指定プロパティに対応するカラムが存在するかを判定する。
+     * @param property プロパティ名
+     * @return 存在すればtrue
+     */
+    public boolean hasColumn(String property) {
+        return columnsByProperty.containsKey(property);
+    }
+
+    /**
+     * 指定プロパティに対応するカラムを取得する。
+     * @param property プロパティ名
+     * @return カラム。存在しない場合はnull
+     */
+    Column getColumn(String property) {
+        return columnsByProperty.get(property);
+    }
+
+    /**
+     * 射影対象のカラムを宣言順で取得する。行を識別できるよう主キーは常に含める。
+     * 宣言順に並べるため、同じフィールド集合からは同じSQLが生成される。
+     * @param properties 取得するプロパティ名
+     * @return 射影対象のカラム一覧
+     * @throws IllegalArgumentException 存在しないプロパティが含まれる場合
+     */
+    public List<Column> selectColumns(Collection<String> properties) {
+        requireIdColumns();
+        for (String property : properties) {
+            if (!hasColumn(property)) {
+                throw new IllegalArgumentException("Unknown field: " + property);
+            }
+        }
+        return columns.stream()
+            .filter(column -> column.isId() || properties.contains(column.getProperty()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 主キーカラムを取得する。
+     * @return 主キーカラム一覧
+     * @throws RepositoryConfigurationException @TableNameまたは@Idが欠落している場合
+     */
+    public List<Column> getIdColumns() {
+        requireIdColumns();
+        return idColumns;
+    }
+
+    /**
+     * 整数のバージョンカラム(@Version)で楽観ロックを行うかを判定する。
+     * 付与されていない場合は最終更新日時で楽観ロックを行う。
+     * @return バージョンカラムを使う場合はtrue
+     */
+    public boolean isVersioned() {
+        return versionColumn != null;
+    }
+
+    /**
+     * 楽観ロックの比較に使う値(バージョンまたは最終更新日時)を取り出す。
+     * @param entity 対象エンティティ
+     * @return 比較値
+     */
+    public Object getLockValue(Object entity) {
+        Column column = columnsByProperty.get(lockProperty);
+        return column != null ? column.getValue(entity) : null;
+    }
+
+    /**
+     * 楽観ロックの比較に使う値の型を取得する。
+     * @return バージョンまたは最終更新日時のプロパティの型。該当プロパティがない場合はnull
+     */
+    public Class<?> getLockValueType() {
+        Column column = columnsByProperty.get(lockProperty);
+        return column != null ? column.getType() : null;
+    }
+
+    /**
+     * 楽観ロックの比較に使う値をエンティティへ設定する。
+     * @param entity 対象エンティティ
+     * @param value 比較値(getLockValueTypeの型)
+     */
+    public void setLockValue(Object entity, Object value) {
+        Column column = columnsByProperty.get(lockProperty);
+        if (column != null) {
+            column.setValue(entity, value);
+        }
+    }
+
+    /**
+     * カラムの値を写した新しいエンティティを作成する。値そのものは複製しない(浅いコピー)。
+     * @param entity 複製元
+     * @return 複製。複製元がnullの場合はnull
+     * @throws IllegalStateException エンティティを生成できない場合
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T entity) {
+        if (entity == null) {
+            return null;
+        }
+        Object copy = newInstance();
+        for (Column column : columns) {
+            column.setValue(copy, column.getValue(entity));
+        }
+        return (T) copy;
+    }
+
+    /**
+     * 既定コンストラクタでエンティティを生成する。生成済みメタデータがあれば生成したコンストラクタ呼び出しを使う。
+     * @return 新しいエンティティ
+     * @throws IllegalStateException エンティティを生成できない場合
+     */
+    Object newInstance() {
+        if (generated != null) {
+            return generated.newInstance();
+        }
+        try {
+            Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot instantiate " + entityClass.getName(), ex);
+        }
+    }
+
+    /**
+     * 更新成功後のバージョン値をエンティティへ反映する。UPDATE文のVERSION + 1と同じ値になる。
+     * バージョンカラムを使わない場合は何もしない。
+     * @param entity 更新したエンティティ
+     */
+    public void advanceVersion(Object entity) {
+        if (versionColumn == null) {
+            return;
+        }
+        Object current = versionColumn.getValue(entity);
+        long next = current != null ? ((Number) current).longValue() + 1 : 1;
+        Class<?> type = versionColumn.getType();
+        versionColumn.setValue(entity, type == Integer.class || type == int.class ? (Object) (int) next : (Object) next);
+    }
+
+    /**
+     * 新規登録したエンティティへ、INSERTで補完したバージョンの初期値(0)を反映する。
+     * バージョンカラムを使わない場合、または値が設定済みの場合は何もしない。
+     * @param entity 登録したエンティティ
+     */
+    public void initializeVersion(Object entity) {
+        if (versionColumn == null || versionColumn.getValue(entity) != null) {
+            return;
+        }
+        Class<?> type = versionColumn.getType();
+        versionColumn.setValue(entity, type == Integer.class || type == int.class ? (Object) 0 : (Object) 0L);
+    }
+
+    /**
+     * 楽観ロックの比較値について、候補が現在値より新しいかを判定する。
+     * @param candidate 候補のエンティティ
+     * @param current 現在のエンティティ
+     * @return 候補の比較値が現在値より大きい(現在値がnullを含む)場合はtrue
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean isNewerVersion(Object candidate, Object current) {
+        Object candidateValue = getLockValue(candidate);
+        Object currentValue = getLockValue(current);
+        if (candidateValue == null) {
+            return false;
+        }
+        return currentValue == null || ((Comparable) candidateValue).compareTo(currentValue) > 0;
+    }
+
+    /**
+     * 監査カラム(登録者・登録日時・最終更新日時)を取得する。
+     * @return 監査カラム一覧
+     */
+    public List<Column> getAuditColumns() {
+        return auditColumns;
+    }
+
+    /**
+     * 事前生成済みのINSERT文を取得する。
+     * @return INSERT文
+     */
+    public String getInsertSql() {
+        requireTableName();
+        return insertSql;
+    }
+
+    /**
+     * 事前生成済みのUPDATE文を取得する。主キーと楽観ロックカラム(@Versionまたは最終更新日時)の両方を条件とし、
+     * 1文で比較と更新を行う。パラメータは"entity"と、新しい最終更新日時の"nextZzcmnFdate"の名前でバインドする。
+     * @return 楽観ロック付きUPDATE文
+     */
+    public String getUpdateSql() {
+        requireIdColumns();
+        return updateSql;
+    }
+
+    /**
+     * 指定フィールドのみを設定する部分更新のUPDATE文を取得する。条件は通常のUPDATEと同じ楽観ロック付きとなる。
+     * SQLはフィールドの組み合わせ(宣言順に正規化)ごとに生成して再利用する。
+     * パラメータは"entity"と"nextZzcmnFdate"の名前でバインドする。
+     * @param properties 更新するプロパティ名
+     * @return 部分更新のUPDATE文
+     * @throws IllegalArgumentException 存在しない、または更新できないフィールドを含む場合
+     */
+    public String getPatchSql(Collection<String> properties) {
+        requireIdColumns();
+        for (String property : properties) {
+            if (!isUpdatable(property)) {
+                throw new IllegalArgumentException("Field cannot be patched: " + property);
+            }
+        }
+        return patchShapes.get(columns.stream()
+            .filter(column -> properties.contains(column.getProperty()))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * 指定プロパティが部分更新で値を書き換えられるカラムかを判定する。
+     * @param property プロパティ名
+     * @return 主キー・監査カラム・バージョンカラム以外のカラムならtrue
+     */
+    public boolean isUpdatable(String property) {
+        Column column = columnsByProperty.get(property);
+        return column != null && isUpdatable(column);
+    }
+
+    /**
+     * 事前生成済みのINSERT ... ON DUPLICATE KEY UPDATE文を取得する。既存行は楽観ロックカラムが一致する場合のみ上書きし、
+     * 成功した更新は最終更新日時を必ず書き換えるため影響件数2となり、登録時と競合時(値を変えない代入)はどちらも1となる。
+     * パラメータは"entity"と"nextZzcmnFdate"の名前でバインドする。
+     * @return 楽観ロック付きUPSERT文
+     */
+    public String getUpsertSql() {
+        requireIdColumns();
+        return upsertSql;
+    }
+
+    /**
+     * 事前生成済みのDELETE文を取得する。主キーと楽観ロックカラムの両方を条件とする。
+     * @return 楽観ロック付きDELETE文
+     */
+    public String getDeleteSql() {
+        requireIdColumns();
+        return deleteSql;
+    }
+
+    /**
+     * 事前生成済みの主キー検索のSELECT文を取得する。
+     * @return 主キー検索のSELECT文
+     */
+    public String getFindByIdSql() {
+        requireIdColumns();
+        return findByIdSql;
+    }
+
+    /**
+     * 事前生成済みの全件取得のSELECT文を取得する。
+     * @return 全件取得のSELECT文
+     */
+    public String getFindAllSql() {
+        requireTableName();
+        return findAllSql;
+    }
+
+    /**
+     * 指定フィールドと主キーのみを取得する主キー検索のSELECT文を取得する。
+     * 主キーは#{entity.主キー}で参照する。フィールドの組み合わせごとに一度だけ組み立てて再利用する。
+     * @param properties 取得するプロパティ名
+     * @return SELECT文
+     * @throws IllegalArgumentException 存在しないフィールドを含む場合
+     */
+    public String getFindByIdSql(Collection<String> properties) {
+        return findByIdProjectedShapes.get(selectColumns(properties));
+    }
+
+    /**
+     * 指定フィールドと主キーのみを取得する全件取得のSELECT文を取得する。
+     * フィールドの組み合わせごとに一度だけ組み立てて再利用する。
+     * @param properties 取得するプロパティ名
+     * @return SELECT文
+     * @throws IllegalArgumentException 存在しないフィールドを含む場合
+     */
+    public String getFindAllSql(Collection<String> properties) {
+        return findAllProjectedShapes.get(selectColumns(properties));
+    }
+
+    /**
+     * 主キー順のキーセットページングで1ページ分を取得するSELECT文を取得する。
+     * カーソル(直前ページ末尾の主キー)がない場合は先頭ページの文を返す。
+     * @param hasCursor カーソルを指定するか
+     * @return SELECT文(#{cursor.主キー}と#{limit}を参照)
+     */
+    public String getFindPageSql(boolean hasCursor) {
+        requireIdColumns();
+        return hasCursor ? findNextPageSql : findFirstPageSql;
+    }
+
+    /**
+     * 事前生成済みの単一エンティティの楽観ロック検証SELECT文を取得する。
+     * @return 単一エンティティの楽観ロック検証SELECT文
+     */
+    public String getCheckUpdateSql() {
+        requireIdColumns();
+        return checkUpdateSql;
+    }
+
+    /**
+     * 複数行を1文で登録する複数行INSERT文を組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * @param size 登録件数
+     * @return INSERT文
+     */
+    public String getInsertAllSql(int size) {
+        requireTableName();
+        return insertAllShapes.get(size);
+    }
+
+    private String buildInsertAllSql(int size) {
+        StringBuilder sql = new StringBuilder(insertAllPrefix.length() + size * columns.size() * 24);
+        sql.append(insertAllPrefix);
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append('(');
+            for (int c = 0; c < columns.size(); c++) {
+                if (c > 0) {
+                    sql.append(", ");
+                }
+                Column column = columns.get(c);
+                sql.append(insertValue(column, "#{list[" + i + "]." + column.getProperty() + "}"));
+            }
+            sql.append(')');
+        }
+        return sql.toString();
+    }
+
+    /**
+     * 複数エンティティの楽観ロック検証SQLを行値構文で組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * (ID, ZZCMN_FDATE) IN ((?, ?), ...) の形で、件数ごとにSQLの形が一つに定まる。
+     * @param size 検証対象の件数
+     * @return SELECT文
+     */
+    public String getCheckUpdateListSql(int size) {
+        requireIdColumns();
+        return checkUpdateListShapes.get(size);
+    }
+
+    private String buildCheckUpdateListSql(int size) {
+        StringBuilder sql = new StringBuilder(checkUpdateListPrefix.length() + size * 64);
+        sql.append(checkUpdateListPrefix);
+        appendLockTuples(sql, size);
+        sql.append(')');
+        return sql.toString();
+    }
+
+    /**
+     * 複数エンティティを楽観ロック付きで削除するSQLを行値構文で組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * (ID, ZZCMN_FDATE) IN ((?, ?), ...) の形で、楽観ロック値が一致する行のみを削除する。
+     * @param size 削除対象の件数
+     * @return DELETE文
+     */
+    public String getDeleteAllSql(int size) {
+        requireIdColumns();
+        return deleteAllShapes.get(size);
+    }
+
+    private String buildDeleteAllSql(int size) {
+        StringBuilder sql = new StringBuilder(64 + size * 64);
+        sql.append("DELETE FROM ").append(tableName).append(" WHERE (").append(lockTupleColumns).append(") IN (");
+        appendLockTuples(sql, size);
+        sql.append(')');
+        return sql.toString();
+    }
+
+    /**
+     * 主キー一覧に該当する行の主キーと現在の最終更新日時を取得するSQLを組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * @param size 主キーの件数
+     * @return SELECT文
+     */
+    public String getFindLockValuesSql(int size) {
+        requireIdColumns();
+        return findLockValuesShapes.get(size);
+    }
+
+    private String buildFindLockValuesSql(int size) {
+        StringBuilder sql = new StringBuilder(64 + size * 32);
+        sql.append("SELECT ").append(lockTupleColumns).append(" FROM ").append(tableName).append(" WHERE ");
+        appendIdInCondition(sql, size);
+        return sql.toString();
+    }
+
+    /**
+     * 主キー一覧に該当する行の主キーと現在の最終更新日時を取得するSQLを組み立てる。
+     * @Versionを持つエンティティでもバージョンではなく最終更新日時カラムを読む。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * @param size 主キーの件数
+     * @return SELECT文
+     */
+    public String getFindStampsSql(int size) {
+        requireIdColumns();
+        return findStampsShapes.get(size);
+    }
+
+    private String buildFindStampsSql(int size) {
+        StringBuilder sql = new StringBuilder(64 + size * 32);
+        sql.append("SELECT ").append(idTupleColumns).append(", ").append(LOCK_COLUMN)
+            .append(" FROM ").append(tableName).append(" WHERE ");
+        appendIdInCondition(sql, size);
+        return sql.toString();
+    }
+
+    /**
+     * 主キー一覧に該当する行をまとめて取得するSQLを組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * @param size 主キーの件数
+     * @return SELECT文
+     */
+    public String getFindByIdsSql(int size) {
+        requireIdColumns();
+        return findByIdsShapes.get(size);
+    }
+
+    private String buildFindByIdsSql(int size) {
+        StringBuilder sql = new StringBuilder(32 + size * 32);
+        sql.append("SELECT * FROM ").append(tableName).append(" WHERE ");
+        appendIdInCondition(sql, size);
+        return sql.toString();
+    }
+
+    /**
+     * 楽観ロック検証用の一時テーブルを作成するSQLを取得する。主キーと最終更新日時のみを保持する。
+     * @return CREATE TEMPORARY TABLE文
+     */
+    public String getCreateLockCheckTableSql() {
+        requireIdColumns();
+        return "CREATE TEMPORARY TABLE " + lockCheckTable + " AS SELECT " + lockTupleColumns
+            + " FROM " + tableName + " WHERE 1 = 0";
+    }
+
+    /**
+     * 楽観ロック検証用の一時テーブルへ検証対象を登録するSQLを組み立てる。
+     * 件数ごとに一度だけ組み立て、以降は同じ文字列を返す。
+     * @param size 登録件数
+     * @return INSERT文
+     */
+    public String getInsertLockCheckRowsSql(int size) {
+        requireIdColumns();
+        return insertLockCheckRowsShapes.get(size);
+    }
+
+    private String buildInsertLockCheckRowsSql(int size) {
+        StringBuilder sql = new StringBuilder(64 + size * 64);
+        sql.append("INSERT INTO ").append(lockCheckTable).append(" (").append(lockTupleColumns).append(") VALUES ");
+        appendLockTuples(sql, size);
+        return sql.toString();
+    }
+
+    /**
+     * 一時テーブルと突き合わせて、主キーと最終更新日時が一致する行数を数えるSQLを取得する。
+     * @return SELECT文
+     */
+    public String getCountLockCheckMatchesSql() {
+        requireIdColumns();
+        String conditions = idColumns.stream()
+            .map(column -> "c." + column.getColumn() + " = e." + column.getColumn())
+            .collect(Collectors.joining(" AND "));
+        return "SELECT COUNT(1) FROM " + tableName + " e WHERE EXISTS (SELECT 1 FROM " + lockCheckTable
+            + " c WHERE " + conditions + " AND c." + lockColumn + " = e." + lockColumn + ")";
+    }
+
+    /**
+     * 楽観ロック検証用の一時テーブルを削除するSQLを取得する。
+     * @return DROP文
+     */
+    public String getDropLockCheckTableSql() {
+        requireIdColumns();
+        return "DROP TEMPORARY TABLE IF EXISTS " + lockCheckTable;
+    }
+
+    /**
+     * リスト要素の主キーに一致するIN条件を追記する。単一主キーは値リスト、複合主キーは行値で表す。
+     * @param sql 追記先
+     * @param size 件数
+     */
+    private void appendIdInCondition(StringBuilder sql, int size) {
+        boolean composite = idColumns.size() > 1;
+        sql.append(composite ? "(" + idTupleColumns + ")" : idTupleColumns).append(" IN (");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if (composite) {
+                sql.append('(');
+            }
+            for (int c = 0; c < idColumns.size(); c++) {
+                if (c > 0) {
+                    sql.append(", ");
+                }
+                sql.append("#{list[").append(i).append("].").append(idColumns.get(c).getProperty()).append('}');
+            }
+            if (composite) {
+                sql.append(')');
+            }
+        }
+        sql.append(')');
+    }
+
+    /**
+     * (主キー..., 最終更新日時) の行値をリスト要素の数だけ連結する。
+     * @param sql 追記先
+     * @param size 件数
+     */
+    private void appendLockTuples(StringBuilder sql, int size) {
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append('(');
+            for (Column idColumn : idColumns) {
+                sql.append("#{list[").append(i).append("].").append(idColumn.getProperty()).append("}, ");
+            }
+            sql.append("#{list[").append(i).append("].").append(lockProperty).append("})");
+        }
+    }
+
+    /**
+     * エンティティから射影対象のカラムの値のみを取り出す。
+     * @param entity 対象エンティティ
+     * @param projection 射影対象のカラム
+     * @return プロパティ名と値の対応(宣言順)
+     */
+    public Map<String, Object> toMap(Object entity, List<Column> projection) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Column column : projection) {
+            values.put(column.getProperty(), column.getValue(entity));
+        }
+        return values;
+    }
+
+    /**
+     * エンティティから主キー値を取り出す。複合キーの場合は宣言順に格納する。
+     * @param entity 対象エンティティ
+     * @return プロパティ名と値の対応
+     */
+    public Map<String, Object> extractId(Object entity) {
+        requireIdColumns();
+        Map<String, Object> id = new LinkedHashMap<>();
+        for (Column idColumn : idColumns) {
+            id.put(idColumn.getProperty(), idColumn.getValue(entity));
+        }
+        return id;
+    }
+
+    /**
+     * @TableNameと@Idがそろっていることを検証する。
+     * @throws RepositoryConfigurationException いずれかが欠落している場合
+     */
+    public void verify() {
+        requireIdColumns();
+    }
+
+    /**
+     * 生成済みのSQL定数があればそれを、なければ構築したSQLを返す。
+     * @param statements 生成済みのSQL定数
+     * @param name 定数名
+     * @param builder SQLの構築処理
+     * @return SQL
+     */
+    private static String generatedOr(Map<String, String> statements, String name, Supplier<String> builder) {
+        String sql = statements.get(name);
+        return sql != null ? sql : builder.get();
+    }
+
+    private void requireTableName() {
+        if (tableName == null) {
+            throw new RepositoryConfigurationException("repository.tableNameMissing", entityName);
+        }
+    }
+
+    private void requireIdColumns() {
+        requireTableName();
+        if (idColumns.isEmpty()) {
+            throw new RepositoryConfigurationException("repository.idMissing", entityName);
+        }
+    }
+
+    private String buildInsertSql() {
+        return new SQL() {{
+            INSERT_INTO(tableName);
+            for (Column column : columns) {
+                VALUES(column.getColumn(), insertValue(column, column.getPlaceholder()));
+            }
+        }}.toString();
+    }
+
+    /**
+     * INSERTで設定する値の式を返す。バージョンカラムは未指定なら0で登録する。
+     * @param column カラム
+     * @param placeholder 値のプレースホルダー
+     * @return 値の式
+     */
+    private static String insertValue(Column column, String placeholder) {
+        return column.isVersion() ? "COALESCE(" + placeholder + ", 0)" : placeholder;
+    }
+
+    private String buildUpdateSql() {
+        return buildUpdateSql(columns.stream()
+            .filter(EntityMetadata::isUpdatable)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * 指定カラムのみを設定する楽観ロック付きUPDATE文を組み立てる。
+     * @param setColumns 値を設定するカラム
+     * @return UPDATE文
+     */
+    private String buildUpdateSql(List<Column> setColumns) {
+        return new SQL() {{
+            UPDATE(tableName);
+
+            String setClauses = setColumns.stream()
+                .map(column -> column.getColumn() + " = " + entityPlaceholder(column.getProperty()))
+                .collect(Collectors.joining(", "));
+
+            SET(setClauses);
+            SET(LOCK_COLUMN + " = " + NEXT_LOCK_VALUE);
+            if (versionColumn != null) {
+                SET(lockColumn + " = " + lockColumn + " + 1");
+            }
+
+            for (Column idColumn : idColumns) {
+                WHERE(idColumn.getColumn() + " = " + entityPlaceholder(idColumn.getProperty()));
+            }
+            WHERE(lockColumn + " = " + entityPlaceholder(lockProperty));
+        }}.toString();
+    }
+
+    /**
+     * UPDATEで値を書き換えるカラムかを判定する。主キー・監査カラム・バージョンカラムは対象外。
+     * @param column カラム
+     * @return 書き換え対象ならtrue
+     */
+    private static boolean isUpdatable(Column column) {
+        return !column.isId() && !column.isVersion() && !AUDIT_PROPERTIES.contains(column.getProperty());
+    }
+
+    private String buildUpsertSql() {
+        String insert = new SQL() {{
+            INSERT_INTO(tableName);
+            for (Column column : columns) {
+                VALUES(column.getColumn(), LOCK_PROPERTY.equals(column.getProperty())
+                    ? NEXT_LOCK_VALUE
+                    : insertValue(column, entityPlaceholder(column.getProperty())));
+            }
+        }}.toString();
+
+        // MySQLは代入を左から評価し後続の式は更新後の値を参照するため、比較に使う楽観ロックカラムは最後に代入する
+        String guard = lockColumn + " <=> " + entityPlaceholder(lockProperty);
+        List<String> assignments = columns.stream()
+            .filter(EntityMetadata::isUpdatable)
+            .map(column -> guardedAssignment(guard, column.getColumn(), entityPlaceholder(column.getProperty())))
+            .collect(Collectors.toList());
+        assignments.add(guardedAssignment(guard, LOCK_COLUMN, NEXT_LOCK_VALUE));
+        if (versionColumn != null) {
+            assignments.add(guardedAssignment(guard, lockColumn, lockColumn + " + 1"));
+        }
+        return insert + " ON DUPLICATE KEY UPDATE " + String.join(", ", assignments);
+    }
+
+    private static String guardedAssignment(String guard, String column, String value) {
+        return column + " = IF(" + guard + ", " + value + ", " + column + ")";
+    }
+
+    /**
+     * "entity"の名前でバインドしたエンティティのプロパティを参照するプレースホルダーを返す。
+     * @param property プロパティ名
+     * @return プレースホルダー
+     */
+    private static String entityPlaceholder(String property) {
+        return "#{" + ENTITY_PREFIX + property + "}";
+    }
+
+    private String buildDeleteSql() {
+        return new SQL() {{
+            DELETE_FROM(tableName);
+
+            for (Column idColumn : idColumns) {
+                WHERE(idColumn.getColumn() + " = " + idColumn.getPlaceholder());
+            }
+            WHERE(lockColumn + " = #{" + lockProperty + "}");
+        }}.toString();
+    }
+
+    private String buildFindByIdSql(List<Column> projection) {
+        SQL sql = new SQL().SELECT(columnList(projection)).FROM(tableName);
+        for (Column idColumn : idColumns) {
+            sql.WHERE(idColumn.getColumn() + " = #{entity." + idColumn.getProperty() + "}");
+        }
+        return sql.toString();
+    }
+
+    private String buildFindAllSql(List<Column> projection) {
+        return new SQL().SELECT(columnList(projection)).FROM(tableName).toString();
+    }
+
+    private String buildFindByIdSql() {
+        SQL sql = new SQL().SELECT("*").FROM(tableName);
+        for (Column idColumn : idColumns) {
+            sql.WHERE(idColumn.getColumn() + " = " + idColumn.getPlaceholder());
+        }
+        return sql.toString();
+    }
+
+    private String buildFindAllSql() {
+        return new SQL() {{
+            SELECT("*");
+            FROM(tableName);
+        }}.toString();
+    }
+
+    /**
+     * 主キー順のキーセットページング用SELECT文を組み立てる。
+     * 複合主キーは (A > ?) OR (A = ? AND B > ?) の形で辞書順の「より後ろ」を表す。
+     * @param hasCursor カーソル条件を付与するか
+     * @return SELECT文
+     */
+    private String buildFindPageSql(boolean hasCursor) {
+        SQL sql = new SQL().SELECT("*").FROM(tableName);
+        if (hasCursor) {
+            List<String> branches = new ArrayList<>();
+            for (int i = 0; i < idColumns.size(); i++) {
+                StringBuilder branch = new StringBuilder();
+                for (int c = 0; c < i; c++) {
+                    branch.append(idColumns.get(c).getColumn()).append(" = ")
+                        .append(cursorPlaceholder(idColumns.get(c))).append(" AND ");
+                }
+                branch.append(idColumns.get(i).getColumn()).append(" > ").append(cursorPlaceholder(idColumns.get(i)));
+                branches.add(branch.toString());
+            }
+            sql.WHERE(branches.size() == 1 ? branches.get(0) : "(" + String.join(") OR (", branches) + ")");
+        }
+        sql.ORDER_BY(idTupleColumnsOf(idColumns));
+        return sql.toString() + " LIMIT #{limit}";
+    }
+
+    private static String columnList(List<Column> projection) {
+        return projection.stream()
+            .map(Column::getColumn)
+            .collect(Collectors.joining(", "));
+    }
+
+    private static String cursorPlaceholder(Column column) {
+        return "#{cursor." + column.getProperty() + "}";
+    }
+
+    private static String idTupleColumnsOf(List<Column> idColumns) {
+        return idColumns.stream()
+            .map(Column::getColumn)
+            .collect(Collectors.joining(", "));
+    }
+
+    private String buildCheckUpdateSql() {
+        return new SQL() {{
+            SELECT("count(1)");
+            FROM(tableName);
+
+            for (Column idColumn : idColumns) {
+                WHERE(idColumn.getColumn() + " = " + idColumn.getPlaceholder());
+            }
+
+            WHERE(lockColumn + " = #{" + lockProperty + "}");
+        }}.toString();
+    }
+
+    /**
+     * 事前生成の対象となる定型SQLを定数名とともに取得する。アノテーションプロセッサーが生成クラスへ書き出す。
+     * @return 定数名をキーとした定型SQL
+     * @throws RepositoryConfigurationException @TableNameまたは@Idが欠落している場合
+     */
+    Map<String, String> getFixedStatements() {
+        requireIdColumns();
+        Map<String, String> statements = new LinkedHashMap<>();
+        statements.put(GeneratedSql.INSERT, insertSql);
+        statements.put(GeneratedSql.UPDATE, updateSql);
+        statements.put(GeneratedSql.UPSERT, upsertSql);
+        statements.put(GeneratedSql.DELETE, deleteSql);
+        statements.put(GeneratedSql.FIND_BY_ID, findByIdSql);
+        statements.put(GeneratedSql.FIND_ALL, findAllSql);
+        statements.put(GeneratedSql.FIND_FIRST_PAGE, findFirstPageSql);
+        statements.put(GeneratedSql.FIND_NEXT_PAGE, findNextPageSql);
+        statements.put(GeneratedSql.CHECK_UPDATE, checkUpdateSql);
+        return statements;
+    }
+
+    private static String tableNameOf(Class<?> entityClass) {
+        TableName tableNameAnnotation = entityClass.getAnnotation(TableName.class);
+        return tableNameAnnotation != null ? tableNameAnnotation.value() : null;
+    }
+
+    private static List<Column> columnsOf(Class<?> entityClass) {
+        List<Column> allColumns = new ArrayList<>();
+        for (Field field : getAllFields(entityClass)) {
+            allColumns.add(new Column(field));
+        }
+        return allColumns;
+    }
+
+    /**
+     * 指定クラスとスーパークラスから全フィールドリストを取得する。
+     * @param clazz 解析対象のクラス
+     * @return フィールドリスト
+     */
+    private static List<Field> getAllFields(Class<?> clazz) {
+        List<Field> fields = new ArrayList<>();
+        while (clazz != null) {
+            Arrays.stream(clazz.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .filter(field -> !Modifier.isTransient(field.getModifiers()))
+                .filter(field -> !field.isSynthetic())
+                .filter(field -> !field.getName().startsWith("$jacoco"))
+                .forEach(fields::add);
+            clazz = clazz.getSuperclass();
+        }
+        return fields;
+    }
+
+    /**
+     * camelCaseのプロパティ名をスネークケースのカラム名へ変換する。
+     * @param str プロパティ名
+     * @return スネークケースへ変換した文字列
+     */
+    static String camelToSnake(String str) {
+        if (str == null) {
+            return null;
+        }
+        return CAMEL_BOUNDARY.matcher(str).replaceAll("$1_$2").toUpperCase();
+    }
+
+    // エンティティの1フィールドとDBカラムの対応情報。
+    public static final class Column {
+
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final Field field;
+        private final Class<?> type;
+        private final String property;
+        private final String column;
+        private final String placeholder;
+        private final boolean id;
+        private final boolean version;
+        private final Function<Object, Object> reader;
+        private final BiConsumer<Object, Object> writer;
+
+        Column(Field field) {
+            field.setAccessible(true);
+            this.field = field;
+            this.type = field.getType();
+            this.property = field.getName();
+            this.column = camelToSnake(property);
+            this.placeholder = "#{" + property + "}";
+            this.id = field.isAnnotationPresent(Id.class);
+            this.version = field.isAnnotationPresent(Version.class);
+            this.reader = null;
+            this.writer = setterOf(field);
+        }
+
+        /**
+         * MyBatisのリフレクションと同様に、フィールドに対応するセッターがあればそれを呼び出す処理を作る。
+         * @param field 対象フィールド
+         * @return セッターを呼び出す処理。セッターがない場合はnull
+         */
+        private static BiConsumer<Object, Object> setterOf(Field field) {
+            String name = field.getName();
+            MethodHandle setter;
+            try {
+                Method method = field.getDeclaringClass().getDeclaredMethod(
+                    "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1), field.getType());
+                method.setAccessible(true);
+                setter = MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException | RuntimeException ex) {
+                // セッターがない、または呼び出せない場合はフィールドへ直接設定する
+                return null;
+            }
+            return (entity, value) -> {
+                try {
+                    setter.invokeExact(entity, value);
+                } catch (RuntimeException | Error ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    throw new IllegalStateException("Cannot write " + field, ex);
+                }
+            };
+        }
+
+        /**
+         * コンパイル時に解析したフィールドからカラム情報を構築する。
+         * 実行時のフィールドを持たないため、値の読み書きには使用できない。
+         * @param property プロパティ名
+         * @param id @Idが付与されている場合true
+         * @param version @Versionが付与されている場合true
+         */
+        Column(String property, boolean id, boolean version) {
+            this(property, null, id, version, null, null);
+        }
+
+        private Column(String property, Class<?> type, boolean id, boolean version,
+                       Function<Object, Object> reader, BiConsumer<Object, Object> writer) {
+            this.field = null;
+            this.type = type;
+            this.property = property;
+            this.column = camelToSnake(property);
+            this.placeholder = "#{" + property + "}";
+            this.id = id;
+            this.version = version;
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        /**
+         * 生成したアクセサーで値を読み書きするカラム情報を構築する。EntityMetadataProcessorの生成クラスから利用する。
+         * @param property プロパティ名
+         * @param type プロパティの型
+         * @param id @Idが付与されている場合true
+         * @param version @Versionが付与されている場合true
+         * @param reader ゲッターを呼び出す処理
+         * @param writer セッターを呼び出す処理
+         * @return カラム情報
+         */
+        public static Column of(String property, Class<?> type, boolean id, boolean version,
+                                Function<Object, Object> reader, BiConsumer<Object, Object> writer) {
+            return new Column(property, type, id, version, reader, writer);
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        public String getProperty() {
+            return property;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public String getPlaceholder() {
+            return placeholder;
+        }
+
+        public boolean isId() {
+            return id;
+        }
+
+        public boolean isVersion() {
+            return version;
+        }
+
+        /**
+         * エンティティからこのカラムに対応する値を取り出す。
+         * @param entity 対象エンティティ
+         * @return フィールド値
+         */
+        public Object getValue(Object entity) {
+            if (reader != null) {
+                return reader.apply(entity);
+            }
+            try {
+                return field.get(entity);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot read " + field, ex);
+            }
+        }
+
+        /**
+         * エンティティのこのカラムへ値を設定する。セッターがあればセッターを、なければフィールドを使う。
+         * @param entity 対象エンティティ
+         * @param value 設定値
+         */
+        public void setValue(Object entity, Object value) {
+            if (writer != null) {
+                writer.accept(entity, value);
+                return;
+            }
+            try {
+                field.set(entity, value);
+            } catch (IllegalAccessException ex) {
+                throw new IllegalStateException("Cannot write " + field, ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// @TableNameが付与されたエンティティの定型SQLとアクセサーをコンパイル時に生成し、<エンティティ>_Metadataクラスとして出力するプロセッサー。
+// 生成クラスから参照できないエンティティ(privateなネストクラス、ゲッター・セッターのないフィールドなど)は生成せず、実行時の解析に任せる。
+@SupportedAnnotationTypes("com.example.optimisticlock.annotation.TableName")
+public class EntityMetadataProcessor extends AbstractProcessor {
+
+    private static final String COLUMN = "com.example.optimisticlock.repository.EntityMetadata.Column";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(TableName.class)) {
+            if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            String packageName = packageOf(type);
+            if (!isAccessibleType(type, packageName) || !hasDefaultConstructor(type)) {
+                continue;
+            }
+            List<Property> properties = propertiesOf(type, packageName);
+            if (properties == null) {
+                continue;
+            }
+            List<EntityMetadata.Column> columns = new ArrayList<>();
+            for (Property property : properties) {
+                columns.add(new EntityMetadata.Column(property.name, property.id, property.version));
+            }
+            String entityName = processingEnv.getElementUtils().getBinaryName(type).toString();
+            EntityMetadata metadata = new EntityMetadata(entityName, type.getAnnotation(TableName.class).value(), columns);
+            // 設定不備は実行時に検出されるため、生成を見送るだけにする
+            if (metadata.hasIdColumns()) {
+                write(type, packageName, entityName, metadata, properties);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * スーパークラスを含むインスタンスフィールドから、生成クラスで読み書きするプロパティを宣言順に取得する。
+     * @param type 解析対象のクラス
+     * @param packageName 生成クラスのパッケージ
+     * @return プロパティ一覧。生成クラスから読み書きできないフィールドがある場合はnull
+     */
+    private List<Property> propertiesOf(TypeElement type, String packageName) {
+        List<Property> properties = new ArrayList<>();
+        for (TypeElement current = type; current != null; current = superclassOf(current)) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                Property property = propertyOf(type, field, packageName);
+                if (property == null) {
+                    return null;
+                }
+                properties.add(property);
+            }
+        }
+        return properties;
+    }
+
+    private Property propertyOf(TypeElement type, VariableElement field, String packageName) {
+        Types types = processingEnv.getTypeUtils();
+        TypeMirror fieldType = types.erasure(types.asMemberOf((DeclaredType) type.asType(), field));
+        if (!isAccessibleType(fieldType, packageName)) {
+            return null;
+        }
+        String entity = "((" + sourceName(types.erasure(type.asType())) + ") entity)";
+        String name = field.getSimpleName().toString();
+        String suffix = accessorSuffix(name, fieldType);
+        String getter = (fieldType.getKind() == TypeKind.BOOLEAN ? "is" : "get") + suffix;
+        String setter = "set" + suffix;
+        String castType = fieldType.getKind().isPrimitive()
+            ? types.boxedClass((PrimitiveType) fieldType).getQualifiedName().toString()
+            : sourceName(fieldType);
+
+        String reader;
+        if (hasAccessor(type, field, getter, null, "lombok.Getter", packageName)) {
+            reader = entity + "." + getter + "()";
+        } else if (isAccessible(field, packageName)) {
+            reader = entity + "." + name;
+        } else {
+            return null;
+        }
+        String writer;
+        if (hasAccessor(type, field, setter, fieldType, "lombok.Setter", packageName)) {
+            writer = entity + "." + setter + "((" + castType + ") value)";
+        } else if (isAccessible(field, packageName) && !field.getModifiers().contains(Modifier.FINAL)) {
+            writer = entity + "." + name + " = (" + castType + ") value";
+        } else {
+            return null;
+        }
+        return new Property(name, sourceName(fieldType), field.getAnnotation(Id.class) != null,
+            field.getAnnotation(Version.class) != null, reader, writer);
+    }
+
+    /**
+     * 生成クラスから呼び出せるゲッター・セッターがあるかを判定する。
+     * 同じコンパイルでLombokが生成するメソッドは、Lombokのアノテーションから判定する。
+     * @param type エンティティ
+     * @param field 対象フィールド
+     * @param methodName メソッド名
+     * @param parameterType セッターの引数型。ゲッターの場合はnull
+     * @param lombokAnnotation 対応するLombokのアノテーション名
+     * @param packageName 生成クラスのパッケージ
+     * @return 呼び出せる場合はtrue
+     */
+    private boolean hasAccessor(TypeElement type, VariableElement field, String methodName, TypeMirror parameterType,
+                                String lombokAnnotation, String packageName) {
+        Types types = processingEnv.getTypeUtils();
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            if (!method.getSimpleName().contentEquals(methodName) || method.getModifiers().contains(Modifier.STATIC)) {
+                continue;
+            }
+            List<? extends TypeMirror> parameters =
+                ((ExecutableType) types.asMemberOf((DeclaredType) type.asType(), method)).getParameterTypes();
+            if (parameterType == null ? parameters.isEmpty()
+                : parameters.size() == 1 && types.isSameType(types.erasure(parameters.get(0)), parameterType)) {
+                return isAccessible(method, packageName);
+            }
+        }
+        if (parameterType != null && field.getModifiers().contains(Modifier.FINAL)) {
+            return false;
+        }
+        Boolean fieldLevel = lombokAccess(field, lombokAnnotation, packageName);
+        if (fieldLevel != null) {
+            return fieldLevel;
+        }
+        Element owner = field.getEnclosingElement();
+        Boolean classLevel = lombokAccess(owner, lombokAnnotation, packageName);
+        if (classLevel != null) {
+            return classLevel;
+        }
+        return hasAnnotation(owner, "lombok.Data")
+            || (parameterType == null && hasAnnotation(owner, "lombok.Value"));
+    }
+
+    /**
+     * Lombokのアクセサー生成アノテーションのアクセスレベルから、生成クラスで呼び出せるかを判定する。
+     * @param annotated アノテーションを確認する要素
+     * @param annotationName アノテーション名
+     * @param packageName 生成クラスのパッケージ
+     * @return 呼び出せる場合はtrue。アノテーションがない場合はnull
+     */
+    private Boolean lombokAccess(Element annotated, String annotationName, String packageName) {
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (!isAnnotation(mirror, annotationName)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    String level = entry.getValue().getValue().toString();
+                    return "PUBLIC".equals(level)
+                        || (!"PRIVATE".equals(level) && !"NONE".equals(level) && packageOf(annotated).equals(packageName));
+                }
+            }
+            return true;
+        }
+        return null;
+    }
+
+    private boolean hasDefaultConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return !constructor.getModifiers().contains(Modifier.PRIVATE);
+            }
+        }
+        return hasAnnotation(type, "lombok.NoArgsConstructor");
+    }
+
+    /**
+     * 生成クラスと同じパッケージから型を参照できるかを判定する。
+     * ローカルクラスや非staticの内部クラスは参照できないものとして扱う。
+     * @param type 対象の型
+     * @param packageName 生成クラスのパッケージ
+     * @return 参照できる場合はtrue
+     */
+    private boolean isAccessibleType(TypeElement type, String packageName) {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL
+            && (type.getNestingKind() != NestingKind.MEMBER || !type.getModifiers().contains(Modifier.STATIC))) {
+            return false;
+        }
+        for (Element current = type; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement()) {
+            if (!isAccessible(current, packageName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isAccessibleType(TypeMirror type, String packageName) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return isAccessibleType(((ArrayType) type).getComponentType(), packageName);
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+            return element.getNestingKind() != NestingKind.LOCAL && element.getNestingKind() != NestingKind.ANONYMOUS
+                && isAccessibleType(element, packageName);
+        }
+        return type.getKind().isPrimitive();
+    }
+
+    private boolean isAccessible(Element element, String packageName) {
+        Set<Modifier> modifiers = element.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC)
+            || (!modifiers.contains(Modifier.PRIVATE) && packageOf(element).equals(packageName));
+    }
+
+    private TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        return element.getQualifiedName().contentEquals(Object.class.getName()) ? null : element;
+    }
+
+    private String packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+
+    /**
+     * ソースコード上の型名を取得する。型注釈を含めないよう、要素の完全修飾名から組み立てる。
+     * @param type 消去済みの型
+     * @return 型名
+     */
+    private static String sourceName(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) {
+            return sourceName(((ArrayType) type).getComponentType()) + "[]";
+        }
+        if (type.getKind() == TypeKind.DECLARED) {
+            return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+        }
+        return type.getKind().name().toLowerCase();
+    }
+
+    /**
+     * Lombokと同じ規則で、アクセサー名のプロパティ部分を取得する。
+     * booleanの「isXxx」フィールドは「Xxx」とする。
+     * @param name フィールド名
+     * @param type フィールドの型
+     * @return アクセサー名の接頭辞より後ろの部分
+     */
+    private static String accessorSuffix(String name, TypeMirror type) {
+        if (type.getKind() == TypeKind.BOOLEAN && name.length() > 2 && name.startsWith("is")
+            && Character.isUpperCase(name.charAt(2))) {
+            return name.substring(2);
+        }
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static boolean hasAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (isAnnotation(mirror, annotationName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAnnotation(AnnotationMirror mirror, String annotationName) {
+        return ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName);
+    }
+
+    /**
+     * 定型SQLの文字列定数とアクセサーを持つ生成クラスを出力する。
+     * @param type 対象エンティティ
+     * @param packageName エンティティのパッケージ
+     * @param entityName エンティティのバイナリ名
+     * @param metadata コンパイル時に構築したメタデータ
+     * @param properties 生成クラスで読み書きするプロパティ
+     */
+    private void write(TypeElement type, String packageName, String entityName, EntityMetadata metadata,
+                       List<Property> properties) {
+        String className = entityName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1)
+            .replace('$', '_') + GeneratedSql.SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("// ").append(entityName).append("の定型SQLとアクセサー。EntityMetadataProcessorが生成するため編集しないこと。\n")
+            .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+            .append("public final class ").append(className)
+            .append(" implements com.example.optimisticlock.repository.GeneratedMetadata {\n\n");
+        appendConstant(source, GeneratedSql.TABLE_NAME, metadata.getTableName());
+        Map<String, String> statements = metadata.getFixedStatements();
+        for (Map.Entry<String, String> statement : statements.entrySet()) {
+            appendConstant(source, statement.getKey(), statement.getValue());
+        }
+
+        source.append("    @Override\n    public String tableName() {\n        return ")
+            .append(GeneratedSql.TABLE_NAME).append(";\n    }\n\n");
+
+        source.append("    @Override\n    public java.util.List<").append(COLUMN).append("> columns() {\n")
+            .append("        return java.util.Arrays.asList(");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            source.append(i > 0 ? ",\n" : "\n")
+                .append("            ").append(COLUMN).append(".of(\"").append(property.name).append("\", ")
+                .append(property.type).append(".class, ").append(property.id).append(", ").append(property.version)
+                .append(",\n                entity -> ").append(property.reader)
+                .append(",\n                (entity, value) -> ").append(property.writer).append(")");
+        }
+        source.append(");\n    }\n\n");
+
+        source.append("    @Override\n    public Object newInstance() {\n        return new ")
+            .append(type.getQualifiedName()).append("();\n    }\n\n");
+
+        source.append("    @Override\n    public java.util.Map<String, String> statements() {\n")
+            .append("        java.util.Map<String, String> statements = new java.util.LinkedHashMap<>();\n");
+        for (String name : statements.keySet()) {
+            source.append("        statements.put(\"").append(name).append("\", ").append(name).append(");\n");
+        }
+        source.append("        return statements;\n    }\n}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Cannot write " + qualifiedName + ": " + ex.getMessage(), type);
+        }
+    }
+
+    private static void appendConstant(StringBuilder source, String name, String value) {
+        source.append("    public static final String ").append(name).append(" = \"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    source.append("\\\"");
+                    break;
+                case '\\':
+                    source.append("\\\\");
+                    break;
+                case '\n':
+                    source.append("\\n");
+                    break;
+                case '\r':
+                    source.append("\\r");
+                    break;
+                case '\t':
+                    source.append("\\t");
+                    break;
+                default:
+                    source.append(c);
+            }
+        }
+        source.append("\";\n\n");
+    }
+
+    // 生成クラスで読み書きする1プロパティ分のソース断片。
+    private static final class Property {
+        private final String name;
+        private final String type;
+        private final boolean id;
+        private final boolean version;
+        private final String reader;
+        private final String writer;
+
+        Property(String name, String type, boolean id, boolean version, String reader, String writer) {
+            this.name = name;
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.reader = reader;
+            this.writer = writer;
+        }
+    }
+}
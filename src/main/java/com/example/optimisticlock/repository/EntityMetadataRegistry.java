@@ -0,0 +1,99 @@
+package com.example.optimisticlock.repository;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// エンティティメタデータとマッパー→エンティティ型の解決結果をクラス単位でキャッシュするレジストリ。
+public final class EntityMetadataRegistry {
+
+    private static final ConcurrentMap<Class<?>, EntityMetadata> METADATA = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<Class<?>, Class<?>> ENTITY_TYPES = new ConcurrentHashMap<>();
+
+    private EntityMetadataRegistry() {
+    }
+
+    /**
+     * エンティティクラスのメタデータを取得する。初回アクセス時のみ解析を行う。
+     * リクエストごとの検証からも呼ばれるため、解析済みの場合はロックを取らない参照だけで返す。
+     * @param entityClass エンティティクラス
+     * @return メタデータ
+     */
+    public static EntityMetadata get(Class<?> entityClass) {
+        EntityMetadata cached = METADATA.get(entityClass);
+        if (cached != null) {
+            return cached;
+        }
+        return METADATA.computeIfAbsent(entityClass, EntityMetadata::new);
+    }
+
+    /**
+     * BaseRepository<T>を実装するマッパー型から、型引数Tとして宣言されたエンティティ型を取得する。
+     * @param mapperType マッパーインタフェース
+     * @return エンティティクラス
+     * @throws RepositoryConfigurationException エンティティ型を特定できない場合
+     */
+    public static Class<?> resolveEntityClass(Class<?> mapperType) {
+        Class<?> cached = ENTITY_TYPES.get(mapperType);
+        if (cached != null) {
+            return cached;
+        }
+        // Every repository is expected to implement BaseRepository<T>; walk the type hierarchy until we find that T.
+        for (Class<?> type = mapperType; type != null; type = type.getSuperclass()) {
+            for (Type genericInterface : type.getGenericInterfaces()) {
+                Class<?> entityClass = resolveEntityClass(genericInterface);
+                if (entityClass != null) {
+                    ENTITY_TYPES.putIfAbsent(mapperType, entityClass);
+                    return entityClass;
+                }
+            }
+        }
+        throw new RepositoryConfigurationException("repository.entityClassUnknown", mapperType.getName());
+    }
+
+    /**
+     * マッパーのプロキシから、BaseRepositoryを継承したマッパーインタフェースを特定する。
+     * @param repository マッパーのプロキシ
+     * @return マッパーインタフェース
+     * @throws RepositoryConfigurationException マッパーインタフェースを特定できない場合
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> Class<R> resolveMapperType(R repository) {
+        for (Class<?> type : repository.getClass().getInterfaces()) {
+            if (BaseRepository.class.isAssignableFrom(type)) {
+                return (Class<R>) type;
+            }
+        }
+        throw new RepositoryConfigurationException("repository.entityClassUnknown", repository.getClass().getName());
+    }
+
+    /**
+     * マッパーのプロキシから、対応するエンティティのメタデータを取得する。
+     * @param repository マッパーのプロキシ
+     * @return メタデータ
+     * @throws RepositoryConfigurationException エンティティ型を特定できない場合
+     */
+    public static EntityMetadata forRepository(BaseRepository<?> repository) {
+        return get(resolveEntityClass(resolveMapperType(repository)));
+    }
+
+    /**
+     * BaseRepository<T>型からエンティティクラスを抽出する補助メソッド。
+     * @param candidate 解析対象の型情報
+     * @return 抽出されたエンティティクラス、存在しない場合はnull
+     */
+    private static Class<?> resolveEntityClass(Type candidate) {
+        if (candidate instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) candidate;
+            if (BaseRepository.class.equals(parameterizedType.getRawType())) {
+                Type actualType = parameterizedType.getActualTypeArguments()[0];
+                if (actualType instanceof Class) {
+                    return (Class<?>) actualType;
+                }
+            }
+        }
+        return null;
+    }
+}
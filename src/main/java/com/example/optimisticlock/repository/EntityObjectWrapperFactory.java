@@ -0,0 +1,67 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapper;
+import org.apache.ibatis.reflection.wrapper.ObjectWrapperFactory;
+
+// 生成済みメタデータを持つエンティティのプロパティを、MyBatisのリフレクションではなく生成したアクセサーで読み書きさせるファクトリ。
+// パラメータのバインド(#{...})と自動マッピングの両方に適用される。
+public class EntityObjectWrapperFactory implements ObjectWrapperFactory {
+
+    /**
+     * 生成済みメタデータを持つエンティティかを判定する。
+     * @param object MyBatisが読み書きするオブジェクト
+     * @return 生成したアクセサーを使える場合はtrue
+     */
+    @Override
+    public boolean hasWrapperFor(Object object) {
+        return object instanceof BaseEntity && EntityMetadataRegistry.get(object.getClass()).isGenerated();
+    }
+
+    /**
+     * カラムに対応する単純なプロパティを生成したアクセサーで扱うラッパーを作成する。
+     * @param metaObject 対象のMetaObject
+     * @param object 対象エンティティ
+     * @return ラッパー
+     */
+    @Override
+    public ObjectWrapper getWrapperFor(MetaObject metaObject, Object object) {
+        return new EntityWrapper(metaObject, object, EntityMetadataRegistry.get(object.getClass()));
+    }
+
+    // カラム以外のプロパティや添字付きの参照は、通常のBeanWrapperに任せるラッパー。
+    private static final class EntityWrapper extends BeanWrapper {
+
+        private final Object entity;
+        private final EntityMetadata metadata;
+
+        EntityWrapper(MetaObject metaObject, Object entity, EntityMetadata metadata) {
+            super(metaObject, entity);
+            this.entity = entity;
+            this.metadata = metadata;
+        }
+
+        @Override
+        public Object get(PropertyTokenizer prop) {
+            EntityMetadata.Column column = columnOf(prop);
+            return column != null ? column.getValue(entity) : super.get(prop);
+        }
+
+        @Override
+        public void set(PropertyTokenizer prop, Object value) {
+            EntityMetadata.Column column = columnOf(prop);
+            if (column != null) {
+                column.setValue(entity, value);
+            } else {
+                super.set(prop, value);
+            }
+        }
+
+        private EntityMetadata.Column columnOf(PropertyTokenizer prop) {
+            return prop.getIndex() == null ? metadata.getColumn(prop.getName()) : null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+import java.lang.reflect.Modifier;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// BaseRepositoryの検索結果を、列構成ごとにコンパイルしたEntityRowMapperでエンティティへ詰め替えるプラグイン。
+// MyBatisの自動マッピングが行ごとに行う列名解決とリフレクションによる設定を省く。
+// 対象外の文(明示的なresultMap、RowBounds、ResultHandler指定など)は標準の処理に任せる。
+@Intercepts(@Signature(type = ResultSetHandler.class, method = "handleResultSets", args = Statement.class))
+public class EntityResultSetInterceptor implements Interceptor {
+
+    // エンティティごとに保持する列構成の上限。射影検索はフィールドの組み合わせだけ構成が増える
+    private static final long MAXIMUM_SHAPES = 256;
+
+    private final ConcurrentMap<Class<?>, Cache<List<String>, EntityRowMapper>> mappers = new ConcurrentHashMap<>();
+
+    /**
+     * 対象の検索であれば、コンパイル済みマッパーで結果セットを詰め替える。
+     * @param invocation handleResultSetsの呼び出し
+     * @return エンティティ一覧
+     * @throws Throwable 標準の処理または詰め替えで発生した例外
+     */
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        if (!(invocation.getTarget() instanceof DefaultResultSetHandler)) {
+            return invocation.proceed();
+        }
+        MetaObject handler = SystemMetaObject.forObject(invocation.getTarget());
+        MappedStatement mappedStatement = (MappedStatement) handler.getValue("mappedStatement");
+        EntityMetadata metadata = entityMetadataOf(mappedStatement);
+        if (metadata == null
+            || handler.getValue("resultHandler") != null
+            || handler.getValue("rowBounds") != RowBounds.DEFAULT) {
+            return invocation.proceed();
+        }
+
+        Statement statement = (Statement) invocation.getArgs()[0];
+        ResultSet resultSet = statement.getResultSet();
+        if (resultSet == null) {
+            return invocation.proceed();
+        }
+        EntityRowMapper mapper = mapperFor(mappedStatement.getConfiguration(), metadata, resultSet.getMetaData());
+        if (mapper == null) {
+            return invocation.proceed();
+        }
+        try {
+            return mapper.mapRows(resultSet);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * 自動マッピングだけで結果を組み立てるエンティティ検索であれば、そのメタデータを取得する。
+     * @param mappedStatement 実行中の文
+     * @return エンティティのメタデータ。対象外の文の場合はnull
+     */
+    private static EntityMetadata entityMetadataOf(MappedStatement mappedStatement) {
+        Configuration configuration = mappedStatement.getConfiguration();
+        if (mappedStatement.getResultSets() != null
+            || mappedStatement.getResultMaps().size() != 1
+            || configuration.getAutoMappingBehavior() == AutoMappingBehavior.NONE
+            || configuration.getAutoMappingUnknownColumnBehavior() != AutoMappingUnknownColumnBehavior.NONE
+            // NULLでもセッターを呼ぶ設定や独自のObjectFactoryは、EntityRowMapperでは再現しない
+            || configuration.isCallSettersOnNulls()
+            || configuration.getObjectFactory().getClass() != DefaultObjectFactory.class) {
+            return null;
+        }
+        ResultMap resultMap = mappedStatement.getResultMaps().get(0);
+        if (!resultMap.getResultMappings().isEmpty()
+            || resultMap.hasNestedResultMaps()
+            || resultMap.getDiscriminator() != null
+            || Boolean.FALSE.equals(resultMap.getAutoMapping())
+            || !BaseEntity.class.isAssignableFrom(resultMap.getType())
+            || Modifier.isAbstract(resultMap.getType().getModifiers())) {
+            return null;
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(resultMap.getType());
+        return metadata.hasTableName() ? metadata : null;
+    }
+
+    private EntityRowMapper mapperFor(Configuration configuration, EntityMetadata metadata,
+                                      ResultSetMetaData resultSetMetaData) throws SQLException {
+        // 列名と型が同じ結果セットには同じマッパーを使う
+        List<String> labels = new ArrayList<>(resultSetMetaData.getColumnCount());
+        for (int index = 1; index <= resultSetMetaData.getColumnCount(); index++) {
+            String label = configuration.isUseColumnLabel()
+                ? resultSetMetaData.getColumnLabel(index)
+                : resultSetMetaData.getColumnName(index);
+            labels.add(label + ':' + resultSetMetaData.getColumnType(index));
+        }
+        Cache<List<String>, EntityRowMapper> shapes = mappers.get(metadata.getEntityClass());
+        if (shapes == null) {
+            shapes = mappers.computeIfAbsent(metadata.getEntityClass(),
+                type -> Caffeine.newBuilder().maximumSize(MAXIMUM_SHAPES).build());
+        }
+        EntityRowMapper mapper = shapes.getIfPresent(labels);
+        if (mapper == null) {
+            mapper = EntityRowMapper.compile(configuration, metadata, resultSetMetaData);
+            if (mapper != null) {
+                shapes.put(labels, mapper);
+            }
+        }
+        return mapper;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.optimisticlock.repository;
+
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// 結果セットの列位置とエンティティのカラムを一度だけ対応付け、行ごとの名前解決なしにエンティティへ詰め替えるマッパー。
+// MyBatisの自動マッピング(map-underscore-to-camel-case)と同じ規則で列とプロパティを対応付ける。
+final class EntityRowMapper {
+
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+    private final Supplier<Object> instantiator;
+    private final int[] indexes;
+    private final TypeHandler<?>[] typeHandlers;
+    private final EntityMetadata.Column[] columns;
+    private final boolean returnInstanceForEmptyRow;
+
+    private EntityRowMapper(Supplier<Object> instantiator, int[] indexes, TypeHandler<?>[] typeHandlers,
+                            EntityMetadata.Column[] columns, boolean returnInstanceForEmptyRow) {
+        this.instantiator = instantiator;
+        this.indexes = indexes;
+        this.typeHandlers = typeHandlers;
+        this.columns = columns;
+        this.returnInstanceForEmptyRow = returnInstanceForEmptyRow;
+    }
+
+    /**
+     * 結果セットの列構成に合わせたマッパーを構築する。
+     * 対応するプロパティがない列は自動マッピングと同様に無視する。
+     * @param configuration MyBatisの設定
+     * @param metadata エンティティのメタデータ
+     * @param resultSetMetaData 結果セットの列情報
+     * @return マッパー。型ハンドラーが見つからない列がある場合など、自動マッピングに任せるべき場合はnull
+     * @throws SQLException 列情報の取得に失敗した場合
+     */
+    static EntityRowMapper compile(Configuration configuration, EntityMetadata metadata,
+                                   ResultSetMetaData resultSetMetaData) throws SQLException {
+        TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+        List<Integer> indexes = new ArrayList<>();
+        List<TypeHandler<?>> typeHandlers = new ArrayList<>();
+        List<EntityMetadata.Column> columns = new ArrayList<>();
+        try {
+            Supplier<Object> instantiator = metadata.getInstantiator();
+            if (instantiator == null) {
+                instantiator = reflectiveInstantiator(metadata.getEntityClass());
+            }
+
+            for (int index = 1; index <= resultSetMetaData.getColumnCount(); index++) {
+                EntityMetadata.Column column = findColumn(configuration, metadata,
+                    configuration.isUseColumnLabel()
+                        ? resultSetMetaData.getColumnLabel(index)
+                        : resultSetMetaData.getColumnName(index));
+                if (column == null) {
+                    continue;
+                }
+                TypeHandler<?> typeHandler = typeHandlerRegistry.getTypeHandler(column.getType(),
+                    JdbcType.forCode(resultSetMetaData.getColumnType(index)));
+                if (typeHandler == null) {
+                    return null;
+                }
+                indexes.add(index);
+                typeHandlers.add(typeHandler);
+                columns.add(column);
+            }
+            return new EntityRowMapper(instantiator,
+                indexes.stream().mapToInt(Integer::intValue).toArray(),
+                typeHandlers.toArray(new TypeHandler<?>[0]),
+                columns.toArray(new EntityMetadata.Column[0]),
+                configuration.isReturnInstanceForEmptyRow());
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException ex) {
+            // 既定コンストラクタを呼び出せない場合は自動マッピングに任せる
+            return null;
+        }
+    }
+
+    /**
+     * 生成済みメタデータがないエンティティを、既定コンストラクタのメソッドハンドルで生成する処理を作る。
+     * @param entityClass エンティティクラス
+     * @return 生成処理
+     * @throws NoSuchMethodException 既定コンストラクタがない場合
+     * @throws IllegalAccessException 既定コンストラクタへアクセスできない場合
+     */
+    private static Supplier<Object> reflectiveInstantiator(Class<?> entityClass)
+        throws NoSuchMethodException, IllegalAccessException {
+        Constructor<?> defaultConstructor = entityClass.getDeclaredConstructor();
+        defaultConstructor.setAccessible(true);
+        MethodHandle constructor = MethodHandles.lookup().unreflectConstructor(defaultConstructor).asType(CONSTRUCTOR_TYPE);
+        return () -> {
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable ex) {
+                throw new ExecutorException("Could not instantiate entity", ex);
+            }
+        };
+    }
+
+    /**
+     * 結果セットの全行をエンティティへ詰め替える。
+     * @param resultSet 結果セット
+     * @return エンティティ一覧
+     * @throws SQLException 値の取得に失敗した場合
+     */
+    List<Object> mapRows(ResultSet resultSet) throws SQLException {
+        List<Object> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            rows.add(mapRow(resultSet));
+        }
+        return rows;
+    }
+
+    private Object mapRow(ResultSet resultSet) throws SQLException {
+        Object entity = instantiator.get();
+        boolean foundValues = false;
+        for (int i = 0; i < indexes.length; i++) {
+            Object value = typeHandlers[i].getResult(resultSet, indexes[i]);
+            // callSettersOnNullsが有効な設定では使われないため、NULLは設定しない
+            if (value != null) {
+                try {
+                    columns[i].setValue(entity, value);
+                } catch (RuntimeException ex) {
+                    throw new ExecutorException("Could not set column " + indexes[i], ex);
+                }
+                foundValues = true;
+            }
+        }
+        return foundValues || returnInstanceForEmptyRow ? entity : null;
+    }
+
+    private static EntityMetadata.Column findColumn(Configuration configuration, EntityMetadata metadata, String label) {
+        String property = configuration.isMapUnderscoreToCamelCase() ? label.replace("_", "") : label;
+        for (EntityMetadata.Column column : metadata.getColumns()) {
+            if (column.getProperty().equalsIgnoreCase(property)) {
+                return column;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.optimisticlock.repository;
+
+import java.util.List;
+import java.util.Map;
+
+// EntityMetadataProcessorが@TableName付きエンティティごとに生成する<エンティティ>_Metadataクラスの共通インタフェース。
+// 生成クラスはエンティティのゲッター・セッターとコンストラクタを直接呼び出すため、実行時のフィールド解析とリフレクションを省ける。
+public interface GeneratedMetadata {
+
+    /**
+     * 生成時のテーブル名を取得する。
+     * @return @TableNameの値
+     */
+    String tableName();
+
+    /**
+     * 継承階層を含む全カラムを宣言順に取得する。値の読み書きは生成したアクセサーで行う。
+     * @return カラム一覧
+     */
+    List<EntityMetadata.Column> columns();
+
+    /**
+     * 既定コンストラクタでエンティティを生成する。
+     * @return 新しいエンティティ
+     */
+    Object newInstance();
+
+    /**
+     * コンパイル時に組み立てた定型SQLを取得する。
+     * @return 定数名をキーとした定型SQL
+     */
+    Map<String, String> statements();
+}
@@ -0,0 +1,56 @@
+package com.example.optimisticlock.repository;
+
+// EntityMetadataProcessorが生成する<エンティティ>_Metadataクラスの名前規則と、実行時の読み込みを担うユーティリティ。
+final class GeneratedSql {
+
+    // 生成クラス名の接尾辞
+    static final String SUFFIX = "_Metadata";
+
+    static final String TABLE_NAME = "TABLE_NAME";
+    static final String INSERT = "INSERT";
+    static final String UPDATE = "UPDATE";
+    static final String UPSERT = "UPSERT";
+    static final String DELETE = "DELETE";
+    static final String FIND_BY_ID = "FIND_BY_ID";
+    static final String FIND_ALL = "FIND_ALL";
+    static final String FIND_FIRST_PAGE = "FIND_FIRST_PAGE";
+    static final String FIND_NEXT_PAGE = "FIND_NEXT_PAGE";
+    static final String CHECK_UPDATE = "CHECK_UPDATE";
+
+    private GeneratedSql() {
+    }
+
+    /**
+     * エンティティに対応する生成クラスを読み込む。
+     * 生成クラスがない場合や、生成後に@TableNameが変わっている場合はnullを返し、実行時の解析に任せる。
+     * @param entityClass エンティティクラス
+     * @param tableName 実行時に取得したテーブル名
+     * @return 生成済みメタデータ。利用できない場合はnull
+     */
+    static GeneratedMetadata load(Class<?> entityClass, String tableName) {
+        if (tableName == null || entityClass.getClassLoader() == null) {
+            return null;
+        }
+        GeneratedMetadata generated;
+        try {
+            Class<?> generatedClass = Class.forName(generatedClassName(entityClass), true, entityClass.getClassLoader());
+            if (!GeneratedMetadata.class.isAssignableFrom(generatedClass)) {
+                return null;
+            }
+            generated = (GeneratedMetadata) generatedClass.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            return null;
+        }
+        // 再コンパイルされていない古い生成クラスは使わない
+        return tableName.equals(generated.tableName()) ? generated : null;
+    }
+
+    /**
+     * 生成クラスの完全修飾名を取得する。ネストしたクラスは外側のクラス名と「_」で連結する。
+     * @param entityClass エンティティクラス
+     * @return 生成クラスの完全修飾名
+     */
+    static String generatedClassName(Class<?> entityClass) {
+        return entityClass.getName().replace('$', '_') + SUFFIX;
+    }
+}
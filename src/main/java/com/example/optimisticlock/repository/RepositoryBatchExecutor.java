@@ -0,0 +1,123 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.MyBatisExceptionTranslator;
+import org.mybatis.spring.SqlSessionHolder;
+import org.springframework.dao.DataAccessException;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.ToIntBiFunction;
+
+// 同一マッパー文を複数エンティティに対してJDBCバッチで実行し、行ごとの影響件数を返す実行器。
+// バッチ用のセッションはトランザクションに登録せず呼び出しごとに開閉するため、同じトランザクションで
+// 通常のマッパー(SIMPLE)を前後に使っても「Cannot change the ExecutorType」とならない。
+public class RepositoryBatchExecutor {
+
+    // バッチを使わず1件ずつ実行するフォールバック
+    public static final RepositoryBatchExecutor SEQUENTIAL = new RepositoryBatchExecutor();
+
+    // サービスが既定で使うプロセス共通のインスタンス。useで設定されるまでは1件ずつ実行する
+    private static volatile RepositoryBatchExecutor shared = SEQUENTIAL;
+
+    private final SqlSessionFactory sqlSessionFactory;
+    private final MyBatisExceptionTranslator exceptionTranslator;
+
+    public RepositoryBatchExecutor(SqlSessionFactory sqlSessionFactory) {
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.exceptionTranslator = new MyBatisExceptionTranslator(
+            sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(), true);
+    }
+
+    private RepositoryBatchExecutor() {
+        this.sqlSessionFactory = null;
+        this.exceptionTranslator = null;
+    }
+
+    /**
+     * プロセス共通のインスタンスを取得する。
+     * @return バッチ実行器
+     */
+    public static RepositoryBatchExecutor shared() {
+        return shared;
+    }
+
+    /**
+     * プロセス共通のインスタンスを、Springが構成したセッションファクトリでJDBCバッチを送信するものに置き換える。
+     * 起動時に一度だけ呼び出す。
+     * @param executor バッチ実行器
+     * @return 置き換えたバッチ実行器
+     */
+    public static RepositoryBatchExecutor use(RepositoryBatchExecutor executor) {
+        shared = executor;
+        return executor;
+    }
+
+    /**
+     * 各エンティティに対してマッパー文を実行し、入力順の影響件数を返す。
+     * バッチ実行時は呼び出し元のトランザクションの接続を共有する専用のセッションで、1回のラウンドトリップにまとめて送信する。
+     * 同じトランザクションの通常のセッションが保持する検索結果のキャッシュは、送信後に破棄する。
+     * トランザクションの同期が有効でない場合は、共有できる接続がないため1件ずつ実行する。
+     * @param repository 通常利用しているマッパー
+     * @param entities 対象エンティティ
+     * @param statement マッパー文の呼び出し
+     * @return 各行の影響件数(ドライバーが件数を返さない場合はStatement.SUCCESS_NO_INFO)
+     * @throws DataAccessException バッチの送信に失敗した場合
+     */
+    public <T extends BaseEntity, R extends BaseRepository<T>> int[] execute(R repository, List<T> entities,
+                                                                           ToIntBiFunction<R, T> statement) {
+        int[] counts = new int[entities.size()];
+        // 専用のセッションはトランザクション外では自動コミットの別接続となり、呼び出し元と原子性を共有できない
+        if (sqlSessionFactory == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            for (int i = 0; i < entities.size(); i++) {
+                counts[i] = statement.applyAsInt(repository, entities.get(i));
+            }
+            return counts;
+        }
+
+        // SpringManagedTransaction経由で、トランザクションに紐づく接続をそのまま使う
+        try (SqlSession batchSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+            R batchMapper = batchSession.getMapper(EntityMetadataRegistry.resolveMapperType(repository));
+            for (T entity : entities) {
+                statement.applyAsInt(batchMapper, entity);
+            }
+
+            int index = 0;
+            for (BatchResult result : batchSession.flushStatements()) {
+                for (int count : result.getUpdateCounts()) {
+                    counts[index++] = count;
+                }
+            }
+        } catch (PersistenceException ex) {
+            DataAccessException translated = exceptionTranslator.translateExceptionIfPossible(ex);
+            throw translated != null ? translated : ex;
+        }
+        clearTransactionCache();
+        return counts;
+    }
+
+    /**
+     * 同じトランザクションで通常のマッパーが使っているセッションのキャッシュを破棄し、バッチ更新前の検索結果を返さないようにする。
+     */
+    private void clearTransactionCache() {
+        SqlSessionHolder holder = (SqlSessionHolder) TransactionSynchronizationManager.getResource(sqlSessionFactory);
+        if (holder != null) {
+            holder.getSqlSession().clearCache();
+        }
+    }
+
+    /**
+     * 影響件数が成功を表すかを判定する。件数不明(SUCCESS_NO_INFO)は成功として扱う。
+     * @param count 影響件数
+     * @return 1件以上または件数不明ならtrue
+     */
+    public static boolean isApplied(int count) {
+        return count > 0 || count == Statement.SUCCESS_NO_INFO;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.reflection.ParamNameResolver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 起動時に全BaseRepositoryマッパーのエンティティ解決とSQL生成を済ませ、初回リクエストの遅延を防ぐ。
+// 各文を代表的なパラメータで一度組み立て、プロバイダーの呼び出しと#{}の解析(CachingLanguageDriverへの登録)を先に行う。
+// 指定フィールドで形が変わる文(patch・射影検索)や、2件以上のリストの形は初回利用時に組み立てる。
+public class RepositoryWarmUp implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryWarmUp.class);
+
+    private final SqlSessionFactory sqlSessionFactory;
+
+    public RepositoryWarmUp(SqlSessionFactory sqlSessionFactory) {
+        this.sqlSessionFactory = sqlSessionFactory;
+    }
+
+    /**
+     * 全シングルトン(マッパーBean含む)の生成完了後、Webサーバー起動前にウォームアップを実行する。
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        warmUp();
+    }
+
+    /**
+     * 登録済みマッパーのうちBaseRepositoryを継承するものについて、エンティティ型とメタデータを解決し、各文のSQLを組み立てる。
+     * 設定不備があれば例外を送出し、アプリケーションの起動を中断させる。
+     * @return ウォームアップしたエンティティクラスの一覧
+     * @throws RepositoryConfigurationException エンティティの@TableNameまたは@Idが欠落している場合
+     */
+    public List<Class<?>> warmUp() {
+        long start = System.nanoTime();
+        Configuration configuration = sqlSessionFactory.getConfiguration();
+
+        List<Class<?>> entityClasses = new ArrayList<>();
+        int statementCount = 0;
+        for (Class<?> mapperType : configuration.getMapperRegistry().getMappers()) {
+            if (!BaseRepository.class.isAssignableFrom(mapperType) || BaseRepository.class.equals(mapperType)) {
+                continue;
+            }
+            Class<?> entityClass = EntityMetadataRegistry.resolveEntityClass(mapperType);
+            EntityMetadata metadata = EntityMetadataRegistry.get(entityClass);
+            metadata.verify();
+            entityClasses.add(entityClass);
+            statementCount += buildStatements(configuration, mapperType, metadata);
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Repository warm-up completed: {} entities, {} statements in {} ms",
+            entityClasses.size(), statementCount, elapsedMillis);
+        return entityClasses;
+    }
+
+    /**
+     * マッパーの各文を、実行時と同じ形のパラメータでgetBoundSqlし、SQLの生成と解析を済ませる。
+     * @param configuration MyBatisの設定
+     * @param mapperType マッパーの型
+     * @param metadata エンティティのメタデータ
+     * @return 組み立てた文の数
+     */
+    private int buildStatements(Configuration configuration, Class<?> mapperType, EntityMetadata metadata) {
+        Object entity;
+        try {
+            entity = metadata.newInstance();
+        } catch (IllegalStateException ex) {
+            log.debug("Skipping statement warm-up for {}", mapperType.getName(), ex);
+            return 0;
+        }
+        int built = 0;
+        for (Method method : BaseRepository.class.getDeclaredMethods()) {
+            String statementId = mapperType.getName() + "." + method.getName();
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || !configuration.hasStatement(statementId)) {
+                continue;
+            }
+            Object[] args = representativeArgs(method, entity);
+            if (args == null) {
+                continue;
+            }
+            ParamNameResolver resolver = new ParamNameResolver(configuration, method);
+            try {
+                configuration.getMappedStatement(statementId).getBoundSql(resolver.getNamedParams(args));
+                // キーセットページングは先頭ページと次ページで文が異なる
+                int cursor = indexOf(method, Map.class);
+                if (cursor >= 0) {
+                    args[cursor] = metadata.extractId(entity);
+                    configuration.getMappedStatement(statementId).getBoundSql(resolver.getNamedParams(args));
+                }
+                built++;
+            } catch (RuntimeException ex) {
+                // ウォームアップは初回の遅延を減らすためだけのもので、失敗しても実行時に組み立てられる
+                log.debug("Skipping statement warm-up for {}", statementId, ex);
+            }
+        }
+        return built;
+    }
+
+    /**
+     * 文の形を決めるのに十分な代表パラメータを作る。値はSQLの組み立てに使われないため空でよい。
+     * @param method マッパーのメソッド
+     * @param entity 空のエンティティ
+     * @return 引数。形が呼び出しごとに変わる文(フィールド指定)はnull
+     */
+    private static Object[] representativeArgs(Method method, Object entity) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] args = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == BaseEntity.class) {
+                args[i] = entity;
+            } else if (types[i] == List.class) {
+                args[i] = Collections.singletonList(entity);
+            } else if (types[i] == int.class) {
+                args[i] = 1;
+            } else if (types[i] != LocalDateTime.class && types[i] != Map.class) {
+                return null;
+            }
+        }
+        return args;
+    }
+
+    private static int indexOf(Method method, Class<?> type) {
+        Class<?>[] types = method.getParameterTypes();
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.optimisticlock.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+// 件数やフィールドの組み合わせで形が決まるSQLを、形ごとに一度だけ組み立てて再利用するキャッシュ。
+// 同じ文字列インスタンスを返すことで、言語ドライバー側の解析済みSqlSourceのキャッシュも効くようにする。
+final class SqlShapeCache<K> {
+
+    private final ConcurrentMap<K, String> shapes = new ConcurrentHashMap<>();
+    private final int limit;
+    private final Function<K, String> builder;
+
+    /**
+     * @param limit 保持する形の上限。超えた形は保持せず都度組み立てる
+     * @param builder 形のキーからSQLを組み立てる処理
+     */
+    SqlShapeCache(int limit, Function<K, String> builder) {
+        this.limit = limit;
+        this.builder = builder;
+    }
+
+    /**
+     * 形に対応するSQLを取得する。未生成なら組み立てて保持する。
+     * @param key 形のキー
+     * @return SQL
+     */
+    String get(K key) {
+        String sql = shapes.get(key);
+        if (sql != null) {
+            return sql;
+        }
+        sql = builder.apply(key);
+        if (shapes.size() < limit) {
+            String existing = shapes.putIfAbsent(key, sql);
+            if (existing != null) {
+                return existing;
+            }
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.BaseRepository;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+// 複数エンティティの楽観ロック検証を件数に応じて実行し分ける戦略。
+public enum CheckUpdateStrategy {
+
+    // 行値IN条件の1文で検証する。件数は2のべき乗に埋めてSQLの形を限定する
+    ROW_VALUE {
+        @Override
+        public <T extends BaseEntity> int countMatches(BaseRepository<T> repository, List<T> entities, int chunkSize) {
+            return repository.checkUpdateList(
+                ListChunks.padded(entities, ListChunks.bucketSize(entities.size(), chunkSize)));
+        }
+    },
+
+    // 固定長チャンクに分けた行値IN条件で検証する。全チャンクが同じSQLになる
+    CHUNKED {
+        @Override
+        public <T extends BaseEntity> int countMatches(BaseRepository<T> repository, List<T> entities, int chunkSize) {
+            int matched = 0;
+            for (List<T> chunk : ListChunks.partition(entities, chunkSize)) {
+                matched += repository.checkUpdateList(ListChunks.padded(chunk, chunkSize));
+            }
+            return matched;
+        }
+    },
+
+    // 一時テーブルへ登録し、対象テーブルと突き合わせて検証する。一時テーブルは接続ごとのため、同期中のトランザクションが必要。
+    // 埋め合わせで重複した行はEXISTSの突き合わせで1件として数えられる
+    TEMP_TABLE {
+        @Override
+        public <T extends BaseEntity> int countMatches(BaseRepository<T> repository, List<T> entities, int chunkSize) {
+            // 同期中でなければ文ごとに接続が取り直され、作成した一時テーブルが後続の文から見えない
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                throw new IllegalStateException("Temporary table lock check requires an active transaction");
+            }
+            repository.createLockCheckTable();
+            try {
+                for (List<T> chunk : ListChunks.partition(entities, chunkSize)) {
+                    repository.insertLockCheckRows(ListChunks.padded(chunk, chunkSize));
+                }
+                return repository.countLockCheckMatches();
+            } finally {
+                repository.dropLockCheckTable();
+            }
+        }
+    };
+
+    /**
+     * 楽観ロック条件に合致する行数を数える。
+     * @param repository 対象リポジトリ
+     * @param entities 検証対象(1件以上)
+     * @param chunkSize 1文にまとめる最大件数
+     * @return 条件に合致した行数
+     * @throws IllegalStateException TEMP_TABLEをトランザクション外で実行した場合
+     */
+    public abstract <T extends BaseEntity> int countMatches(BaseRepository<T> repository, List<T> entities, int chunkSize);
+
+    /**
+     * 件数に応じた戦略を選択する。
+     * @param size 検証対象の件数
+     * @param chunkSize 1文にまとめる最大件数
+     * @param tempTableThreshold 一時テーブルを使う件数の下限
+     * @return 選択した戦略
+     */
+    public static CheckUpdateStrategy select(int size, int chunkSize, int tempTableThreshold) {
+        if (size >= tempTableThreshold) {
+            return TEMP_TABLE;
+        }
+        if (size > chunkSize) {
+            return CHUNKED;
+        }
+        return ROW_VALUE;
+    }
+}
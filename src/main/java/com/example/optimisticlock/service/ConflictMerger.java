@@ -0,0 +1,15 @@
+package com.example.optimisticlock.service;
+
+// 楽観ロック競合時に、最新の行へ今回の変更を再適用するマージ処理。
+@FunctionalInterface
+public interface ConflictMerger<T> {
+
+    /**
+     * 最新の行に今回の変更を適用したエンティティを作成する。
+     * 戻り値は最新の行の楽観ロック値(最終更新日時またはバージョン)を引き継ぐこと。
+     * @param latest DBから再読込みした最新のエンティティ
+     * @param attempted 競合した更新内容
+     * @return 再更新するエンティティ
+     */
+    T merge(T latest, T attempted);
+}
@@ -0,0 +1,123 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.RetryOnConflict;
+import com.example.optimisticlock.exception.OptimisticLockException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+// @RetryOnConflictの設定に従い、楽観ロック競合時の再読込み・マージ・再更新を行う再試行ポリシー。
+public final class ConflictRetryPolicy {
+
+    private static final ConcurrentMap<Class<?>, Optional<ConflictRetryPolicy>> POLICIES = new ConcurrentHashMap<>();
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    ConflictRetryPolicy(int maxAttempts, long backoffMillis, long maxBackoffMillis) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = Math.max(0, backoffMillis);
+        this.maxBackoffMillis = Math.max(this.backoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * エンティティクラスに対応する再試行ポリシーを取得する。初回アクセス時のみ生成する。
+     * @param entityClass エンティティクラス
+     * @return 再試行ポリシー。@RetryOnConflictが付与されていない場合はnull
+     */
+    public static ConflictRetryPolicy of(Class<?> entityClass) {
+        return POLICIES.computeIfAbsent(entityClass, type ->
+            Optional.ofNullable(type.getAnnotation(RetryOnConflict.class))
+                .map(settings -> new ConflictRetryPolicy(
+                    settings.maxAttempts(), settings.backoffMillis(), settings.maxBackoffMillis()))
+        ).orElse(null);
+    }
+
+    /**
+     * 更新を実行し、楽観ロック競合時は待機・再読込み・マージのうえ最大試行回数まで再更新する。
+     * @param entity 更新内容
+     * @param attempt 1回分の楽観ロック付き更新(競合時はOptimisticLockException)
+     * @param reload 最新の行の再読込み(削除済みはnull)
+     * @param merger 最新の行への変更の再適用
+     * @return 実際に更新したエンティティ
+     * @throws OptimisticLockException 最大試行回数に達した場合、または行が削除されていた場合
+     */
+    public <T> T execute(T entity, Consumer<T> attempt, UnaryOperator<T> reload, ConflictMerger<T> merger) {
+        T candidate = entity;
+        for (int attemptCount = 1; ; attemptCount++) {
+            try {
+                attempt.accept(candidate);
+                if (attemptCount > 1) {
+                    recovered.increment();
+                }
+                return candidate;
+            } catch (OptimisticLockException ex) {
+                conflicts.increment();
+                if (attemptCount >= maxAttempts) {
+                    exhausted.increment();
+                    throw ex;
+                }
+                sleep(attemptCount, ex);
+                T latest = reload.apply(entity);
+                if (latest == null) {
+                    exhausted.increment();
+                    throw ex;
+                }
+                retries.increment();
+                candidate = merger.merge(latest, entity);
+            }
+        }
+    }
+
+    /**
+     * 指数的に増やした上限までの範囲で乱数化した待機時間を求める(フルジッター)。
+     * 同時に競合したリクエストの再試行が同じ時刻に集中しないようにする。
+     * @param attemptCount 失敗した試行の回数
+     * @return 待機時間(ミリ秒)
+     */
+    long backoffMillis(int attemptCount) {
+        long ceiling = backoffMillis << Math.min(attemptCount - 1, 20);
+        long bound = Math.min(maxBackoffMillis, ceiling < 0 ? maxBackoffMillis : ceiling);
+        return bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * 競合・再試行・回復・断念の件数を取得する。
+     * @return 統計項目名と値の対応
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("maxAttempts", maxAttempts);
+        values.put("conflictCount", conflicts.sum());
+        values.put("retryCount", retries.sum());
+        values.put("recoveredCount", recovered.sum());
+        values.put("exhaustedCount", exhausted.sum());
+        return values;
+    }
+
+    private void sleep(int attemptCount, OptimisticLockException cause) {
+        long millis = backoffMillis(attemptCount);
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
@@ -3,8 +3,28 @@ package com.example.optimisticlock.service;
 import com.example.optimisticlock.entity.BaseEntity;
 import com.example.optimisticlock.exception.OptimisticLockException;
 import com.example.optimisticlock.repository.BaseRepository;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+import com.example.optimisticlock.repository.RepositoryBatchExecutor;
+import com.example.optimisticlock.util.MonotonicClock;
+import jakarta.validation.ValidationException;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 // 汎用的なCRUD処理をサービス層で再利用するための共通インタフェース。
 public interface CrudService<T extends BaseEntity, R extends BaseRepository<T>> {
@@ -16,23 +36,239 @@ public interface CrudService<T extends BaseEntity, R extends BaseRepository<T>>
     R getRepository();
 
     /**
-     * エンティティを新規登録する。
+     * 一括処理で1文にまとめる最大件数。実装クラスで上書きして調整する。
+     * @return チャンクサイズ
+     */
+    default int getBatchChunkSize() {
+        return 500;
+    }
+
+    /**
+     * 楽観ロック検証で一時テーブル方式に切り替える件数の下限。実装クラスで上書きして調整する。
+     * @return 一時テーブルを使う件数
+     */
+    default int getTempTableThreshold() {
+        return 10000;
+    }
+
+    /**
+     * 楽観ロック検証の件数に応じて検証戦略を選択する。
+     * @param size 検証対象の件数
+     * @return 検証戦略
+     */
+    default CheckUpdateStrategy selectCheckUpdateStrategy(int size) {
+        return CheckUpdateStrategy.select(size, getBatchChunkSize(), getTempTableThreshold());
+    }
+
+    /**
+     * キーセットページングで1回に取得できる最大件数。実装クラスで上書きして調整する。
+     * @return 最大ページサイズ
+     */
+    default int getMaxPageSize() {
+        return 1000;
+    }
+
+    /**
+     * 一括更新などで利用するバッチ実行器。既定では起動時に登録したRepositoryBatchExecutorのBeanでJDBCバッチを使う。
+     * トランザクション外の呼び出しや、Beanの登録前は1件ずつ実行する。
+     * @return バッチ実行器
+     */
+    default RepositoryBatchExecutor getBatchExecutor() {
+        return RepositoryBatchExecutor.shared();
+    }
+
+    /**
+     * 更新時の最終更新日時を採番する時計。既定ではDBのタイムゾーンで採番するプロセス共通の時計を使う。
+     * @return 単調増加する時計
+     */
+    default MonotonicClock getClock() {
+        return MonotonicClock.shared();
+    }
+
+    /**
+     * 楽観ロック競合時に最新の行へ変更を再適用するマージ処理。既定ではマージせず競合をそのまま通知する。
+     * 実装クラスでこのメソッドを上書きすると、エンティティの@RetryOnConflictによる自動再試行と
+     * @CoalesceWritesによる更新の集約が有効になる。
+     * @return マージ処理。再試行しない場合はnull
+     */
+    default ConflictMerger<T> getConflictMerger() {
+        return null;
+    }
+
+    /**
+     * エンティティを新規登録する。バージョンカラムが未指定の場合は、登録した初期値をエンティティへ反映する。
      * @param entity 登録対象
      */
     default void insert(T entity) {
         getRepository().insert(entity);
+        UpdateStamps.inserted(entity);
+    }
+
+    /**
+     * 複数エンティティをgetBatchExecutorのJDBCバッチで一括登録する。getBatchChunkSize件ごとに送信し、
+     * 行ごとの登録件数を返す。未指定のバージョンには登録した初期値を反映する。
+     * @param entities 登録対象
+     * @return 入力順の行ごとの登録件数(ドライバーが件数を返さない場合はStatement.SUCCESS_NO_INFO)
+     */
+    @Transactional
+    default int[] insertAll(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new int[0];
+        }
+        int[] counts = new int[entities.size()];
+        int offset = 0;
+        for (List<T> chunk : ListChunks.partition(entities, getBatchChunkSize())) {
+            int[] chunkCounts = getBatchExecutor().execute(getRepository(), chunk, BaseRepository::insert);
+            System.arraycopy(chunkCounts, 0, counts, offset, chunkCounts.length);
+            offset += chunk.size();
+        }
+        entities.forEach(UpdateStamps::inserted);
+        return counts;
+    }
+
+    /**
+     * エンティティを更新する。getConflictMergerを提供している場合、@CoalesceWritesのエンティティは
+     * 同一主キーへの同時更新を時間窓でまとめ(まとめた同じ版の更新同士は競合として扱わない)、
+     * @RetryOnConflictのエンティティは競合時に再読込み・マージ・再更新を行う。
+     * 呼び出し元のトランザクション内では最新の行を読み直せず、結果も共有できないため、いずれも行わない。
+     * @param entity 更新対象
+     * @return 実際に更新したエンティティ(再試行・集約時はマージ結果)
+     * @throws OptimisticLockException 楽観ロックに失敗した場合
+     */
+    default T update(T entity) {
+        ConflictMerger<T> merger = getConflictMerger();
+        if (merger == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            updateOnce(entity);
+            return entity;
+        }
+        ConflictRetryPolicy policy = ConflictRetryPolicy.of(entity.getClass());
+        UnaryOperator<T> writer = policy == null
+            ? candidate -> {
+                updateOnce(candidate);
+                return candidate;
+            }
+            : candidate -> policy.execute(candidate, this::updateOnce, getRepository()::findById, merger);
+
+        WriteCoalescer coalescer = WriteCoalescer.of(entity.getClass());
+        if (coalescer == null) {
+            return writer.apply(entity);
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entity.getClass());
+        return coalescer.submit(metadata.extractId(entity), metadata.getLockValue(entity), entity, writer, merger);
+    }
+
+    /**
+     * 楽観ロック付きの更新を1回だけ行う。UPDATE文自体が最終更新日時を条件とするため、事前の検証SELECTは不要。
+     * 成功時は新しい最終更新日時(およびバージョン)をエンティティへ反映するため、再読込みせずに次の更新へ使える。
+     * @param entity 更新対象
+     * @throws OptimisticLockException 楽観ロックに失敗した場合
+     */
+    default void updateOnce(T entity) {
+        LocalDateTime stamp = UpdateStamps.next(entity, getClock());
+        int result = getRepository().update(entity, stamp);
+        if (result == 0) {
+            throw new OptimisticLockException("Update failed, data has been modified by others");
+        }
+        UpdateStamps.apply(entity, stamp);
+        evictCached(entity);
     }
 
     /**
-     * エンティティを更新する。
+     * 指定フィールドのみを楽観ロック付きで更新する。変更のないカラムはSET句に含めない。
+     * 成功時は新しい最終更新日時(およびバージョン)をエンティティへ反映する。
      * @param entity 更新対象
+     * @param fields 更新するプロパティ名
+     * @return 更新したエンティティ
+     * @throws ValidationException フィールドが空、または存在しない・更新できないフィールドを含む場合
      * @throws OptimisticLockException 楽観ロックに失敗した場合
      */
-    default void update(T entity) {
-        int result = getRepository().update(entity);
+    default T patch(T entity, Set<String> fields) {
+        Projections.requireUpdatableFields(EntityMetadataRegistry.get(entity.getClass()), fields);
+        LocalDateTime stamp = UpdateStamps.next(entity, getClock());
+        int result = getRepository().patch(entity, fields, stamp);
         if (result == 0) {
             throw new OptimisticLockException("Update failed, data has been modified by others");
         }
+        UpdateStamps.apply(entity, stamp);
+        evictCached(entity);
+        return entity;
+    }
+
+    /**
+     * 複数エンティティを楽観ロック付きUPDATEで一括更新する。
+     * 全件を1トランザクションで実行し、1件でも競合があればロールバックする。
+     * 成功時は各エンティティへ新しい最終更新日時を反映する。
+     * @param entities 更新対象
+     * @throws OptimisticLockException 競合した行がある場合(競合キーを保持する)
+     */
+    @Transactional
+    default void updateAll(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return;
+        }
+        Map<T, LocalDateTime> stamps = UpdateStamps.next(entities, getClock());
+        int[] counts = getBatchExecutor().execute(getRepository(), entities,
+            (repository, entity) -> repository.update(entity, stamps.get(entity)));
+        List<Map<String, Object>> conflictKeys = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (!RepositoryBatchExecutor.isApplied(counts[i])) {
+                T entity = entities.get(i);
+                conflictKeys.add(EntityMetadataRegistry.get(entity.getClass()).extractId(entity));
+            }
+        }
+        if (!conflictKeys.isEmpty()) {
+            throw new OptimisticLockException("Update failed, data has been modified by others", conflictKeys);
+        }
+        for (T entity : entities) {
+            UpdateStamps.apply(entity, stamps.get(entity));
+            evictCached(entity);
+        }
+    }
+
+    /**
+     * 未登録なら登録し、登録済みなら楽観ロック値が一致する場合のみ更新する。
+     * 事前の検索を行わず1文で判定するため、他の更新と競合しても上書きしない。
+     * 成功時は新しい最終更新日時(およびバージョン)をエンティティへ反映する。
+     * 影響件数だけでは登録と競合を区別できないため、その場合は同じトランザクション内で該当行の最終更新日時を読み直す。
+     * @param entity 登録・更新対象
+     * @return 登録・更新・競合のいずれか
+     */
+    @Transactional
+    default UpsertResult upsert(T entity) {
+        LocalDateTime stamp = UpdateStamps.next(entity, getClock());
+        int count = getRepository().upsert(entity, stamp);
+        UpsertResult result = UpsertResults.resolve(getRepository(), Collections.singletonList(entity),
+            new int[] {count}, Collections.singletonMap(entity, stamp), getBatchChunkSize()).get(0);
+        UpdateStamps.apply(entity, stamp, result);
+        if (result != UpsertResult.CONFLICTED) {
+            evictCached(entity);
+        }
+        return result;
+    }
+
+    /**
+     * 複数エンティティをupsertする。競合した行があっても他の行は反映し、行ごとの結果を返す。
+     * @param entities 登録・更新対象
+     * @return 各行の結果(入力順)
+     */
+    @Transactional
+    default List<UpsertResult> upsertAll(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<T, LocalDateTime> stamps = UpdateStamps.next(entities, getClock());
+        int[] counts = getBatchExecutor().execute(getRepository(), entities,
+            (repository, entity) -> repository.upsert(entity, stamps.get(entity)));
+        List<UpsertResult> results =
+            UpsertResults.resolve(getRepository(), entities, counts, stamps, getBatchChunkSize());
+        for (int i = 0; i < results.size(); i++) {
+            T entity = entities.get(i);
+            UpdateStamps.apply(entity, stamps.get(entity), results.get(i));
+            if (results.get(i) != UpsertResult.CONFLICTED) {
+                evictCached(entity);
+            }
+        }
+        return results;
     }
 
     /**
@@ -45,15 +281,139 @@ public interface CrudService<T extends BaseEntity, R extends BaseRepository<T>>
         if (result == 0) {
             throw new OptimisticLockException("Delete failed, data has been modified by others");
         }
+        evictCached(entity);
     }
 
     /**
-     * ID条件で単一エンティティを取得する。
+     * 複数エンティティを楽観ロック付きの行値IN条件でチャンクごとにまとめて削除する。
+     * 事前に主キーと楽観ロック値のみを読み込んで削除対象を絞り、該当なし・更新済みの主キーは削除せずに報告する。
+     * 全チャンクを1トランザクションで実行し、削除できた行はそのまま確定する。
+     * @param entities 削除対象
+     * @return 削除件数と削除しなかった主キー
+     */
+    @Transactional
+    default DeleteAllResult deleteAll(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new DeleteAllResult(0, Collections.emptyList(), Collections.emptyList());
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entities.get(0).getClass());
+        int chunkSize = getBatchChunkSize();
+        Map<Map<String, Object>, Object> current = LockValues.current(getRepository(), metadata, entities, chunkSize);
+
+        List<T> targets = new ArrayList<>();
+        for (T entity : entities) {
+            Map<String, Object> key = metadata.extractId(entity);
+            if (current.containsKey(key) && Objects.equals(current.get(key), metadata.getLockValue(entity))) {
+                targets.add(entity);
+            }
+        }
+        int deleted = 0;
+        for (List<T> chunk : ListChunks.partition(targets, chunkSize)) {
+            List<T> padded = ListChunks.padded(chunk, ListChunks.bucketSize(chunk.size(), chunkSize));
+            deleted += getRepository().deleteAll(padded);
+        }
+        // 事前の読込み後に他者が更新した行は削除されずに残るため、更新済みとして報告する
+        Set<Map<String, Object>> remaining = deleted < targets.size()
+            ? LockValues.current(getRepository(), metadata, targets, chunkSize).keySet()
+            : Collections.emptySet();
+
+        List<Map<String, Object>> staleKeys = new ArrayList<>();
+        List<Map<String, Object>> missingKeys = new ArrayList<>();
+        for (T entity : entities) {
+            Map<String, Object> key = metadata.extractId(entity);
+            if (!current.containsKey(key)) {
+                missingKeys.add(key);
+            } else if (!Objects.equals(current.get(key), metadata.getLockValue(entity)) || remaining.contains(key)) {
+                staleKeys.add(key);
+            } else {
+                evictCached(entity);
+            }
+        }
+        return new DeleteAllResult(deleted, staleKeys, missingKeys);
+    }
+
+    /**
+     * ID条件で単一エンティティを取得する。@EntityCacheが付与されたエンティティはキャッシュを経由する。
+     * @CoalesceReadsが付与されたエンティティは、同じ主キーへの実行中の検索があればその結果を共有する。
+     * ただしトランザクション内では自身の未コミットの更新を読めるよう、またロールバックされ得る行を
+     * 他の呼び出し元へ渡さないよう、キャッシュも共有も使わずに検索する。
+     * キャッシュや共有した検索からは呼び出しごとの複製を返すため、取得したエンティティはそのまま更新に使ってよい。
      * @param entity 検索条件
      * @return 該当エンティティ
      */
     default T findById(T entity) {
-        return getRepository().findById(entity);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return getRepository().findById(entity);
+        }
+        EntityCacheStore cache = EntityCacheStore.of(entity.getClass());
+        if (cache != null) {
+            Map<String, Object> key = EntityMetadataRegistry.get(entity.getClass()).extractId(entity);
+            return cache.get(key, k -> getRepository().findById(entity));
+        }
+        ReadCoalescer coalescer = ReadCoalescer.of(entity.getClass());
+        if (coalescer == null) {
+            return getRepository().findById(entity);
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entity.getClass());
+        return coalescer.load(metadata.extractId(entity), () -> getRepository().findById(entity), metadata::copy);
+    }
+
+    /**
+     * 主キーに該当する行の現在の楽観ロック値のみを取得する。行全体は取得しないため、条件付き取得の判定に使う。
+     * @param entity 検索条件
+     * @return 現在の楽観ロック値。該当行がない場合はnull
+     */
+    default Object findLockValue(T entity) {
+        EntityMetadata metadata = EntityMetadataRegistry.get(entity.getClass());
+        return LockValues.current(getRepository(), metadata, Collections.singletonList(entity), 1)
+            .get(metadata.extractId(entity));
+    }
+
+    /**
+     * エンティティのキャッシュエントリを無効化し、実行中の主キー検索の共有を打ち切る。
+     * @EntityCache・@CoalesceReadsのいずれも付与されていなければ何もしない。
+     * @param entity 更新・削除したエンティティ
+     */
+    default void evictCached(T entity) {
+        EntityCacheStore cache = EntityCacheStore.of(entity.getClass());
+        ReadCoalescer coalescer = ReadCoalescer.of(entity.getClass());
+        if (cache == null && coalescer == null) {
+            return;
+        }
+        Map<String, Object> key = EntityMetadataRegistry.get(entity.getClass()).extractId(entity);
+        if (cache != null) {
+            cache.invalidate(key);
+        }
+        if (coalescer != null) {
+            coalescer.forget(key);
+        }
+    }
+
+    /**
+     * このサービスが扱うエンティティの競合再試行の統計を取得する。
+     * @return 統計項目名と値の対応。再試行対象外の場合は空
+     */
+    default Map<String, Object> getRetryStats() {
+        ConflictRetryPolicy policy = ConflictRetryPolicy.of(EntityMetadataRegistry.forRepository(getRepository()).getEntityClass());
+        return policy != null ? policy.stats() : Collections.emptyMap();
+    }
+
+    /**
+     * このサービスが扱うエンティティのキャッシュ統計を取得する。
+     * @return 統計項目名と値の対応。キャッシュ対象外の場合は空
+     */
+    default Map<String, Object> getCacheStats() {
+        EntityCacheStore cache = EntityCacheStore.of(EntityMetadataRegistry.forRepository(getRepository()).getEntityClass());
+        return cache != null ? cache.stats() : Collections.emptyMap();
+    }
+
+    /**
+     * このサービスが扱うエンティティの主キー検索の集約統計を取得する。
+     * @return 統計項目名と値の対応。集約対象外の場合は空
+     */
+    default Map<String, Object> getReadCoalescingStats() {
+        ReadCoalescer coalescer = ReadCoalescer.of(EntityMetadataRegistry.forRepository(getRepository()).getEntityClass());
+        return coalescer != null ? coalescer.stats() : Collections.emptyMap();
     }
 
     /**
@@ -65,17 +425,157 @@ public interface CrudService<T extends BaseEntity, R extends BaseRepository<T>>
     }
 
     /**
-     * リスト更新前に楽観ロック条件を検証する。
+     * 複数の主キーに該当するエンティティを一括取得する。
+     * チャンクごとに1文のIN条件で取得し、結果を要求順に並べ直す。
+     * @param entities 検索条件
+     * @return 要求順の取得結果と、該当がなかった主キー
+     */
+    default MultiGetResult<T> findByIds(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return new MultiGetResult<>(Collections.emptyList(), Collections.emptyList());
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entities.get(0).getClass());
+        int chunkSize = getBatchChunkSize();
+
+        // トランザクション内で読んだ行は未コミットの可能性があるため、キャッシュへ反映しない
+        EntityCacheStore cache = TransactionSynchronizationManager.isActualTransactionActive()
+            ? null : EntityCacheStore.of(metadata.getEntityClass());
+        Map<Map<String, Object>, T> found = new HashMap<>();
+        for (List<T> chunk : ListChunks.partition(entities, chunkSize)) {
+            List<T> padded = ListChunks.padded(chunk, ListChunks.bucketSize(chunk.size(), chunkSize));
+            for (T row : getRepository().findByIds(padded)) {
+                Map<String, Object> key = metadata.extractId(row);
+                found.put(key, row);
+                if (cache != null) {
+                    cache.refresh(key, row);
+                }
+            }
+        }
+
+        List<T> items = new ArrayList<>(entities.size());
+        List<Map<String, Object>> missingKeys = new ArrayList<>();
+        for (T entity : entities) {
+            Map<String, Object> key = metadata.extractId(entity);
+            T row = found.get(key);
+            items.add(row);
+            if (row == null) {
+                missingKeys.add(key);
+            }
+        }
+        return new MultiGetResult<>(items, missingKeys);
+    }
+
+    /**
+     * ID条件で単一エンティティの指定フィールドのみを取得する。
+     * @param entity 検索条件
+     * @param fields 取得するプロパティ名(主キーは常に含まれる)
+     * @return 指定フィールドのみを設定したエンティティ
+     * @throws ValidationException 存在しないフィールドが指定された場合
+     */
+    default T findById(T entity, Collection<String> fields) {
+        Projections.requireKnownFields(EntityMetadataRegistry.get(entity.getClass()), fields);
+        return getRepository().findByIdProjected(entity, fields);
+    }
+
+    /**
+     * 全件の指定フィールドのみを取得する。
+     * @param fields 取得するプロパティ名(主キーは常に含まれる)
+     * @return 指定フィールドのみを設定したエンティティ一覧
+     * @throws ValidationException 存在しないフィールドが指定された場合
+     */
+    default List<T> findAll(Collection<String> fields) {
+        Projections.requireKnownFields(EntityMetadataRegistry.forRepository(getRepository()), fields);
+        return getRepository().findAllProjected(fields);
+    }
+
+    /**
+     * 主キー順のキーセットページングで1ページ分を取得する。
+     * OFFSETを使わないため、後方のページでも読み飛ばしが発生しない。
+     * @param cursor 前ページのnextCursor。先頭ページはnull
+     * @param size ページサイズ(1以上getMaxPageSize以下)
+     * @return ページ内容と次ページのカーソル
+     * @throws ValidationException ページサイズまたはカーソルが不正な場合
+     */
+    default KeysetPage<T> findPage(String cursor, int size) {
+        if (size < 1 || size > getMaxPageSize()) {
+            throw new ValidationException("Page size must be between 1 and " + getMaxPageSize());
+        }
+        List<T> items = getRepository().findPage(CursorTokens.decode(cursor), size);
+        String nextCursor = null;
+        if (items.size() == size) {
+            T last = items.get(size - 1);
+            nextCursor = CursorTokens.encode(EntityMetadataRegistry.get(last.getClass()).extractId(last));
+        }
+        return new KeysetPage<>(items, nextCursor);
+    }
+
+    /**
+     * 全件をカーソルで1行ずつ読み進め、受け取り側へ順に渡す。
+     * 結果をリストに溜めないため、件数によらずメモリ使用量が一定に保たれる。
+     * 読み終えるまで接続を占有するため、受け取り処理ではこのトランザクションでDBへアクセスしないこと。
+     * @param consumer 各エンティティの受け取り処理
+     */
+    @Transactional(readOnly = true)
+    default void streamAll(Consumer<? super T> consumer) {
+        try (Cursor<T> cursor = getRepository().streamAll()) {
+            for (T entity : cursor) {
+                consumer.accept(entity);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * リスト更新前に楽観ロック条件を検証する。件数に応じてselectCheckUpdateStrategyの戦略で実行する。
      * @param entities 検証対象
      * @throws OptimisticLockException 楽観ロックに失敗した場合
      */
+    @Transactional
     default void checkUpdateList(List<T> entities) {
         if (entities == null || entities.isEmpty()) {
             return;
         }
-        int result = getRepository().checkUpdateList(entities);
+        int result = selectCheckUpdateStrategy(entities.size())
+            .countMatches(getRepository(), entities, getBatchChunkSize());
         if (result != entities.size()) {
             throw new OptimisticLockException("Update failed, data has been modified by others");
         }
     }
+
+    /**
+     * 楽観ロック条件を満たさないエンティティの主キーを求める。
+     * 主キーと現在の楽観ロック値(バージョンまたは最終更新日時)のみを取得し、メモリ上のハッシュ照合で差分を判定する。
+     * @param entities 検証対象
+     * @return 更新済みまたは削除済みのエンティティの主キー一覧(入力順)
+     */
+    default List<Map<String, Object>> findStaleKeys(List<T> entities) {
+        if (entities == null || entities.isEmpty()) {
+            return Collections.emptyList();
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entities.get(0).getClass());
+        Map<Map<String, Object>, Object> current =
+            LockValues.current(getRepository(), metadata, entities, getBatchChunkSize());
+
+        List<Map<String, Object>> staleKeys = new ArrayList<>();
+        for (T entity : entities) {
+            Map<String, Object> key = metadata.extractId(entity);
+            if (!current.containsKey(key) || !Objects.equals(current.get(key), metadata.getLockValue(entity))) {
+                staleKeys.add(key);
+            }
+        }
+        return staleKeys;
+    }
+
+    /**
+     * リスト更新前に楽観ロック条件を検証し、失敗時は競合した主キーを例外に含める。
+     * @param entities 検証対象
+     * @throws OptimisticLockException 楽観ロックに失敗した場合(競合キーを保持する)
+     */
+    default void checkUpdateListWithKeys(List<T> entities) {
+        List<Map<String, Object>> staleKeys = findStaleKeys(entities);
+        if (!staleKeys.isEmpty()) {
+            throw new OptimisticLockException("Update failed, data has been modified by others", staleKeys);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.util.Json;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.validation.ValidationException;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// ページング用カーソル(主キーのプロパティ名と値)とURLセーフな文字列を相互変換する。
+// JSONへの変換には、レスポンスと同じSpring Bootが構成したObjectMapperを使う。
+final class CursorTokens {
+
+    private static final TypeReference<LinkedHashMap<String, Object>> KEY_TYPE =
+        new TypeReference<LinkedHashMap<String, Object>>() {};
+
+    private CursorTokens() {
+    }
+
+    /**
+     * 主キーをカーソル文字列へ変換する。
+     * @param key プロパティ名と値の対応
+     * @return Base64URLでエンコードしたJSON
+     */
+    static String encode(Map<String, Object> key) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Json.mapper().writeValueAsBytes(key));
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to encode page cursor", ex);
+        }
+    }
+
+    /**
+     * カーソル文字列を主キーへ復元する。
+     * @param token カーソル文字列。null・空文字は先頭ページを表す
+     * @return プロパティ名と値の対応。先頭ページの場合はnull
+     * @throws ValidationException カーソルの形式が不正な場合
+     */
+    static Map<String, Object> decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token);
+            return Json.mapper().readValue(json, KEY_TYPE);
+        } catch (IllegalArgumentException | IOException ex) {
+            throw new ValidationException("Invalid page cursor");
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.optimisticlock.service;
+
+import java.util.List;
+import java.util.Map;
+
+// 一括削除の結果。削除件数と、削除しなかった主キーを理由ごとに保持する。
+public final class DeleteAllResult {
+
+    private final int deletedCount;
+    private final List<Map<String, Object>> staleKeys;
+    private final List<Map<String, Object>> missingKeys;
+
+    public DeleteAllResult(int deletedCount, List<Map<String, Object>> staleKeys,
+                           List<Map<String, Object>> missingKeys) {
+        this.deletedCount = deletedCount;
+        this.staleKeys = staleKeys;
+        this.missingKeys = missingKeys;
+    }
+
+    /**
+     * 削除した件数を取得する。
+     * @return 削除件数
+     */
+    public int getDeletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * 他者に更新されていたため削除しなかった主キーを取得する。
+     * @return 主キー一覧(要求順)
+     */
+    public List<Map<String, Object>> getStaleKeys() {
+        return staleKeys;
+    }
+
+    /**
+     * 該当する行がなかった主キーを取得する。
+     * @return 主キー一覧(要求順)
+     */
+    public List<Map<String, Object>> getMissingKeys() {
+        return missingKeys;
+    }
+}
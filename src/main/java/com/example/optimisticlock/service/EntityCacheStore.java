@@ -0,0 +1,105 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.EntityCache;
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// @EntityCacheを付与したエンティティの主キー検索結果を保持する、件数上限と有効期間付きのキャッシュ。
+// 呼び出し側での変更(更新時の楽観ロック値の書き戻しなど)が他の読み手へ漏れないよう、登録・取得とも複製を扱う。
+public final class EntityCacheStore {
+
+    private static final ConcurrentMap<Class<?>, Optional<EntityCacheStore>> STORES = new ConcurrentHashMap<>();
+
+    private final EntityMetadata metadata;
+    private final Cache<Map<String, Object>, BaseEntity> cache;
+
+    private EntityCacheStore(Class<?> entityClass, EntityCache settings) {
+        this.metadata = EntityMetadataRegistry.get(entityClass);
+        // W-TinyLFUによる退避と、登録からの有効期間による失効を併用する
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(settings.maximumSize())
+            .expireAfterWrite(settings.expireAfterWriteSeconds(), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * エンティティクラスに対応するキャッシュを取得する。初回アクセス時のみ生成する。
+     * @param entityClass エンティティクラス
+     * @return キャッシュ。@EntityCacheが付与されていない場合はnull
+     */
+    public static EntityCacheStore of(Class<?> entityClass) {
+        return STORES.computeIfAbsent(entityClass, type ->
+            Optional.ofNullable(type.getAnnotation(EntityCache.class)).map(settings -> new EntityCacheStore(type, settings))
+        ).orElse(null);
+    }
+
+    /**
+     * キャッシュから取得し、未登録であれば読み込んで登録する。
+     * 同じ主キーの読み込みと無効化は直列化されるため、無効化前の読み込み結果が無効化後に残ることはない。
+     * @param key 主キー
+     * @param loader 未登録時の読み込み処理(該当なしはnull)
+     * @return 登録済みエンティティの複製。該当なしの場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends BaseEntity> T get(Map<String, Object> key, Function<Map<String, Object>, T> loader) {
+        return (T) metadata.copy(cache.get(key, loader));
+    }
+
+    /**
+     * 登録済みのエンティティを、楽観ロック値(バージョンまたは最終更新日時)がより新しい場合のみ置き換える。
+     * 未登録の主キーは登録しないため、読み込み後に無効化された古いデータが入り込むことはない。
+     * @param key 主キー
+     * @param entity 取得したエンティティ。登録するのは複製のため、呼び出し側はそのまま返してよい
+     */
+    public void refresh(Map<String, Object> key, BaseEntity entity) {
+        cache.asMap().computeIfPresent(key,
+            (k, current) -> metadata.isNewerVersion(entity, current) ? metadata.copy(entity) : current);
+    }
+
+    /**
+     * 主キーに対応するエントリを無効化する。トランザクション中であれば完了後(コミット・ロールバックとも)にも
+     * 再度無効化し、完了前に読み込まれた旧データや、ロールバックされた未コミットのデータを取り除く。
+     * @param key 主キー
+     */
+    public void invalidate(Map<String, Object> key) {
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    /**
+     * ヒット・ミス・退避の件数などの統計を取得する。
+     * @return 統計項目名と値の対応
+     */
+    public Map<String, Object> stats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("size", cache.estimatedSize());
+        values.put("hitCount", stats.hitCount());
+        values.put("missCount", stats.missCount());
+        values.put("evictionCount", stats.evictionCount());
+        values.put("hitRate", stats.hitRate());
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.optimisticlock.service;
+
+import java.util.List;
+
+// キーセットページングの1ページ分の結果と、次ページ取得用のカーソルを保持する。
+public final class KeysetPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * このページのエンティティ一覧を取得する。
+     * @return エンティティ一覧(主キー昇順)
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * 次ページを取得するためのカーソルを取得する。
+     * @return カーソル文字列。最終ページの場合はnull
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.optimisticlock.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// 一括処理向けにリストを固定長のチャンクへ分割し、SQLの形をそろえる補助クラス。
+final class ListChunks {
+
+    private ListChunks() {
+    }
+
+    /**
+     * リストを指定サイズごとのチャンクへ分割する。
+     * @param list 分割対象
+     * @param size チャンクサイズ
+     * @return チャンク一覧(元リストのビュー)
+     */
+    static <E> List<List<E>> partition(List<E> list, int size) {
+        List<List<E>> chunks = new ArrayList<>((list.size() + size - 1) / size);
+        for (int from = 0; from < list.size(); from += size) {
+            chunks.add(list.subList(from, Math.min(from + size, list.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * 末尾要素を繰り返してリストを指定件数まで埋める。
+     * IN条件では重複要素が結果に影響しないため、SQLの形を固定してプリペアドステートメントを再利用できる。
+     * @param chunk 対象チャンク(1件以上)
+     * @param size 埋めた後の件数
+     * @return 指定件数のリスト。既に指定件数以上なら元のリスト
+     */
+    static <E> List<E> padded(List<E> chunk, int size) {
+        if (chunk.size() >= size) {
+            return chunk;
+        }
+        List<E> padded = new ArrayList<>(size);
+        padded.addAll(chunk);
+        padded.addAll(Collections.nCopies(size - chunk.size(), chunk.get(chunk.size() - 1)));
+        return padded;
+    }
+
+    /**
+     * 件数を2のべき乗に切り上げ、上限で打ち止めにしたバケットサイズを求める。
+     * @param size 件数
+     * @param max 上限
+     * @return バケットサイズ
+     */
+    static int bucketSize(int size, int max) {
+        int bucket = Integer.highestOneBit(Math.max(size, 1));
+        if (bucket < size) {
+            bucket <<= 1;
+        }
+        return Math.min(bucket, max);
+    }
+}
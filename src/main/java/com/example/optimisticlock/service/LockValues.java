@@ -0,0 +1,61 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.BaseRepository;
+import com.example.optimisticlock.repository.EntityMetadata;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// 指定エンティティの現在の楽観ロック値を主キーと楽観ロックカラムのみの取得でまとめて読み込む補助クラス。
+final class LockValues {
+
+    private LockValues() {
+    }
+
+    /**
+     * 主キーごとの現在の楽観ロック値を取得する。該当行がない主キーは結果に含まれない。
+     * @param repository 対象リポジトリ
+     * @param metadata エンティティのメタデータ
+     * @param entities 対象エンティティ(1件以上)
+     * @param chunkSize 1文にまとめる最大件数
+     * @return 主キーと現在の楽観ロック値の対応
+     */
+    static <T extends BaseEntity> Map<Map<String, Object>, Object> current(BaseRepository<T> repository,
+                                                                          EntityMetadata metadata,
+                                                                          List<T> entities, int chunkSize) {
+        Map<Map<String, Object>, Object> current = new HashMap<>();
+        for (List<T> chunk : ListChunks.partition(entities, chunkSize)) {
+            List<T> padded = ListChunks.padded(chunk, ListChunks.bucketSize(chunk.size(), chunkSize));
+            for (T row : repository.findLockValues(padded)) {
+                current.put(metadata.extractId(row), metadata.getLockValue(row));
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 主キーごとの現在の最終更新日時を取得する。@Versionを持つエンティティでも最終更新日時カラムを読む。
+     * 該当行がない主キーは結果に含まれない。
+     * @param repository 対象リポジトリ
+     * @param metadata エンティティのメタデータ
+     * @param entities 対象エンティティ(1件以上)
+     * @param chunkSize 1文にまとめる最大件数
+     * @return 主キーと現在の最終更新日時の対応
+     */
+    static <T extends BaseEntity> Map<Map<String, Object>, LocalDateTime> currentStamps(BaseRepository<T> repository,
+                                                                                       EntityMetadata metadata,
+                                                                                       List<T> entities,
+                                                                                       int chunkSize) {
+        Map<Map<String, Object>, LocalDateTime> current = new HashMap<>();
+        for (List<T> chunk : ListChunks.partition(entities, chunkSize)) {
+            List<T> padded = ListChunks.padded(chunk, ListChunks.bucketSize(chunk.size(), chunkSize));
+            for (T row : repository.findStamps(padded)) {
+                current.put(metadata.extractId(row), row.getZzcmnFdate());
+            }
+        }
+        return current;
+    }
+}
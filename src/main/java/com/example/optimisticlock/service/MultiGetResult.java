@@ -0,0 +1,32 @@
+package com.example.optimisticlock.service;
+
+import java.util.List;
+import java.util.Map;
+
+// 複数主キーによる一括取得の結果。要求順の取得結果と、該当がなかった主キーを保持する。
+public final class MultiGetResult<T> {
+
+    private final List<T> items;
+    private final List<Map<String, Object>> missingKeys;
+
+    public MultiGetResult(List<T> items, List<Map<String, Object>> missingKeys) {
+        this.items = items;
+        this.missingKeys = missingKeys;
+    }
+
+    /**
+     * 要求と同じ順序の取得結果を取得する。
+     * @return エンティティ一覧(該当なしの位置はnull)
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * 該当するエンティティがなかった主キーを取得する。
+     * @return 主キー一覧(要求順)
+     */
+    public List<Map<String, Object>> getMissingKeys() {
+        return missingKeys;
+    }
+}
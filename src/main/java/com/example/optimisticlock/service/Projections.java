@@ -0,0 +1,47 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.repository.EntityMetadata;
+import jakarta.validation.ValidationException;
+
+import java.util.Collection;
+
+// 射影取得・部分更新で指定されたフィールドをエンティティのメタデータと照合する。
+final class Projections {
+
+    private Projections() {
+    }
+
+    /**
+     * 指定フィールドがすべてエンティティのカラムとして存在することを検証する。
+     * @param metadata 対象エンティティのメタデータ
+     * @param fields 取得するプロパティ名
+     * @throws ValidationException フィールドが空、または存在しないフィールドを含む場合
+     */
+    static void requireKnownFields(EntityMetadata metadata, Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            throw new ValidationException("At least one field must be specified");
+        }
+        for (String field : fields) {
+            if (!metadata.hasColumn(field)) {
+                throw new ValidationException("Unknown field: " + field);
+            }
+        }
+    }
+
+    /**
+     * 指定フィールドがすべて部分更新で書き換えられるカラムであることを検証する。
+     * @param metadata 対象エンティティのメタデータ
+     * @param fields 更新するプロパティ名
+     * @throws ValidationException フィールドが空、または存在しない・更新できないフィールドを含む場合
+     */
+    static void requireUpdatableFields(EntityMetadata metadata, Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            throw new ValidationException("At least one field must be specified");
+        }
+        for (String field : fields) {
+            if (!metadata.isUpdatable(field)) {
+                throw new ValidationException("Field cannot be patched: " + field);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.CoalesceReads;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+// @CoalesceReadsの設定に従い、同一主キーへの実行中の検索に後続の呼び出しを相乗りさせて結果を共有する。
+public final class ReadCoalescer {
+
+    private static final ConcurrentMap<Class<?>, Optional<ReadCoalescer>> COALESCERS = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    ReadCoalescer() {
+    }
+
+    /**
+     * エンティティクラスに対応する検索集約器を取得する。初回アクセス時のみ生成する。
+     * @param entityClass エンティティクラス
+     * @return 検索集約器。@CoalesceReadsが付与されていない場合はnull
+     */
+    public static ReadCoalescer of(Class<?> entityClass) {
+        return COALESCERS.computeIfAbsent(entityClass, type ->
+            Optional.ofNullable(type.getAnnotation(CoalesceReads.class)).map(settings -> new ReadCoalescer())
+        ).orElse(null);
+    }
+
+    /**
+     * 同じ主キーの検索が実行中であればその結果を待って共有し、なければ自ら検索する。
+     * 検索の完了後に届いた呼び出しは新たに検索するため、完了済みの結果を使い回すことはない。
+     * 検索したインスタンスはどの呼び出し元にも渡さず、呼び出し元ごとの複製を返す。
+     * ある呼び出し元の変更(更新時の楽観ロック値の書き戻しなど)が、他の呼び出し元の楽観ロックをすり抜けさせないためである。
+     * @param key 主キー
+     * @param loader 1回分の検索
+     * @param copier 検索結果の複製(該当なしのnullは渡さない)
+     * @return 検索結果の複製。該当なしの場合はnull
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T load(Object key, Supplier<T> loader, UnaryOperator<T> copier) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.increment();
+            waiting.incrementAndGet();
+            try {
+                return copyOf((T) running.join(), copier);
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw ex;
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+
+        queries.increment();
+        T result;
+        try {
+            result = loader.get();
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+        inFlight.remove(key, future);
+        future.complete(result);
+        return copyOf(result, copier);
+    }
+
+    private static <T> T copyOf(T result, UnaryOperator<T> copier) {
+        return result != null ? copier.apply(result) : null;
+    }
+
+    /**
+     * 実行中の検索を以降の呼び出しから切り離す。更新・削除の後に呼び出し、更新前に始まった検索を共有させない。
+     * 既に待っている呼び出し元には、その検索の結果がそのまま返る。
+     * @param key 主キー
+     */
+    public void forget(Object key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * 検索の集約状況を取得する。
+     * @return 統計項目名と値の対応
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("queryCount", queries.sum());
+        values.put("coalescedCount", coalesced.sum());
+        values.put("waitingCount", waiting.get());
+        values.put("inFlightCount", inFlight.size());
+        return values;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+import com.example.optimisticlock.util.MonotonicClock;
+
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// UPDATEで設定する新しい楽観ロック値の採番と、更新成功後のエンティティへの反映を行う。
+// 採番した値はマッパーの引数としてバインドし、更新が成功するまでエンティティには書き込まない。
+final class UpdateStamps {
+
+    private UpdateStamps() {
+    }
+
+    /**
+     * 更新前に新しい最終更新日時を採番する。
+     * @param entity 更新対象
+     * @param clock 採番に使う時計
+     * @return UPDATE文へバインドする最終更新日時
+     */
+    static LocalDateTime next(BaseEntity entity, MonotonicClock clock) {
+        return clock.nextAfter(entity.getZzcmnFdate());
+    }
+
+    /**
+     * 一括更新の前に、エンティティごとの新しい最終更新日時を採番する。
+     * @param entities 更新対象
+     * @param clock 採番に使う時計
+     * @return エンティティ(同一性で識別)ごとの最終更新日時
+     */
+    static <T extends BaseEntity> Map<T, LocalDateTime> next(List<T> entities, MonotonicClock clock) {
+        Map<T, LocalDateTime> stamps = new IdentityHashMap<>(entities.size());
+        for (T entity : entities) {
+            stamps.put(entity, next(entity, clock));
+        }
+        return stamps;
+    }
+
+    /**
+     * 更新成功後、DBに書き込まれた楽観ロック値をエンティティへ反映する。
+     * 再読込みせずにそのまま次の更新へ使える状態になる。
+     * @param entity 更新したエンティティ
+     * @param stamp 更新時にバインドした最終更新日時
+     */
+    static void apply(BaseEntity entity, LocalDateTime stamp) {
+        entity.setZzcmnFdate(stamp);
+        EntityMetadataRegistry.get(entity.getClass()).advanceVersion(entity);
+    }
+
+    /**
+     * 新規登録後、INSERTで補完したバージョンの初期値(0)をエンティティへ反映する。
+     * 登録したエンティティをそのまま更新へ使っても、バージョン条件がNULLで一致しなくなることはない。
+     * @param entity 登録したエンティティ
+     */
+    static void inserted(BaseEntity entity) {
+        EntityMetadataRegistry.get(entity.getClass()).initializeVersion(entity);
+    }
+
+    /**
+     * upsert後、結果に応じてDBに書き込まれた楽観ロック値をエンティティへ反映する。
+     * 新規登録時はバージョンを初期値とし、競合時はエンティティを変更しない。
+     * @param entity 登録・更新対象
+     * @param stamp 登録・更新時にバインドした最終更新日時
+     * @param result upsertの結果
+     */
+    static void apply(BaseEntity entity, LocalDateTime stamp, UpsertResult result) {
+        switch (result) {
+            case INSERTED:
+                entity.setZzcmnFdate(stamp);
+                inserted(entity);
+                break;
+            case UPDATED:
+                apply(entity, stamp);
+                break;
+            default:
+                break;
+        }
+    }
+}
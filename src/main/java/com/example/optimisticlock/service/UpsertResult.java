@@ -0,0 +1,33 @@
+package com.example.optimisticlock.service;
+
+// upsertの行ごとの結果。影響件数と書き込み後の最終更新日時から登録・更新・競合を判別する。
+public enum UpsertResult {
+
+    // 未登録のため新規登録した
+    INSERTED,
+
+    // 楽観ロック値が一致したため既存行を更新した
+    UPDATED,
+
+    // 既存行の楽観ロック値が一致せず、何も変更しなかった
+    CONFLICTED;
+
+    /**
+     * INSERT ... ON DUPLICATE KEY UPDATEの影響件数から結果を判別する。
+     * 成功した更新は必ず最終更新日時を書き換えるため2となる。MySQLの既定(found rows)では登録と楽観ロック不一致による
+     * 無変更がどちらも1となるため、件数1の行は書き込み後の最終更新日時が採番した値と一致するかで判別する。
+     * 件数不明(SUCCESS_NO_INFO)は反映済みとしてUPDATEDに含める。
+     * @param count 影響件数(登録時1、更新時2、競合時1。接続設定useAffectedRows=trueの場合は競合時0)
+     * @param stamped 書き込み後の行が採番した最終更新日時を持つ場合はtrue
+     * @return 判別した結果
+     */
+    public static UpsertResult of(int count, boolean stamped) {
+        if (count == 0) {
+            return CONFLICTED;
+        }
+        if (count == 1) {
+            return stamped ? INSERTED : CONFLICTED;
+        }
+        return UPDATED;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.BaseRepository;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+// upsertの影響件数から行ごとの結果を判別する補助クラス。
+// MySQLの既定(found rows)では登録と楽観ロック不一致がどちらも1件となるため、該当行のみ最終更新日時を読み直して判別する。
+final class UpsertResults {
+
+    private UpsertResults() {
+    }
+
+    /**
+     * upsertの影響件数から行ごとの結果を判別する。影響件数が1の行は、upsertと同じトランザクション内で
+     * 最終更新日時を読み直し、採番した値が書き込まれていれば登録、そうでなければ競合とみなす。
+     * @param repository 対象リポジトリ
+     * @param entities upsertしたエンティティ(1件以上)
+     * @param counts 各行の影響件数(入力順)
+     * @param stamps エンティティごとにバインドした最終更新日時
+     * @param chunkSize 読み直しで1文にまとめる最大件数
+     * @return 各行の結果(入力順)
+     */
+    static <T extends BaseEntity> List<UpsertResult> resolve(BaseRepository<T> repository, List<T> entities,
+                                                             int[] counts, Map<T, LocalDateTime> stamps,
+                                                             int chunkSize) {
+        List<T> ambiguous = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 1) {
+                ambiguous.add(entities.get(i));
+            }
+        }
+        List<UpsertResult> results = new ArrayList<>(counts.length);
+        if (ambiguous.isEmpty()) {
+            for (int count : counts) {
+                results.add(UpsertResult.of(count, false));
+            }
+            return results;
+        }
+        EntityMetadata metadata = EntityMetadataRegistry.get(entities.get(0).getClass());
+        Map<Map<String, Object>, LocalDateTime> current =
+            LockValues.currentStamps(repository, metadata, ambiguous, chunkSize);
+        for (int i = 0; i < counts.length; i++) {
+            T entity = entities.get(i);
+            boolean stamped = counts[i] == 1
+                && Objects.equals(current.get(metadata.extractId(entity)), stamps.get(entity));
+            results.add(UpsertResult.of(counts[i], stamped));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.CoalesceWrites;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+
+// @CoalesceWritesの設定に従い、同一主キーへの同時更新を主キー単位のキューに集めて1回の更新にまとめる。
+public final class WriteCoalescer {
+
+    private static final ConcurrentMap<Class<?>, Optional<WriteCoalescer>> COALESCERS = new ConcurrentHashMap<>();
+
+    private final long windowMillis;
+    private final Stripe[] stripes;
+
+    WriteCoalescer(long windowMillis, int stripeCount) {
+        this.windowMillis = Math.max(0, windowMillis);
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * エンティティクラスに対応する更新集約器を取得する。初回アクセス時のみ生成する。
+     * @param entityClass エンティティクラス
+     * @return 更新集約器。@CoalesceWritesが付与されていない場合はnull
+     */
+    public static WriteCoalescer of(Class<?> entityClass) {
+        return COALESCERS.computeIfAbsent(entityClass, type ->
+            Optional.ofNullable(type.getAnnotation(CoalesceWrites.class))
+                .map(settings -> new WriteCoalescer(settings.windowMillis(), settings.stripes()))
+        ).orElse(null);
+    }
+
+    /**
+     * 更新をキューへ投入し、同じ時間窓に集まった同一主キーの更新とまとめて実行した結果を返す。
+     * 最初に投入した呼び出し元が時間窓の経過後にまとめて実行し、他の呼び出し元はその結果を共有する。
+     * 楽観ロック値が同じ(同じ版を元にした)更新だけをマージして1回で更新し、
+     * 異なる版を元にした更新は個別に実行するため、本当に競合する更新は従来どおり失敗する。
+     * マージした更新同士は競合として検知されず、全員がマージ結果を受け取る。
+     * 振り分け先に他の実行中の更新がなければ時間窓を待たずに実行し、競合のない更新を遅らせない。
+     * @param key 主キー
+     * @param lockValue 更新内容の楽観ロック値
+     * @param entity 更新内容
+     * @param writer 1回分の楽観ロック付き更新(実際に更新したエンティティを返す)
+     * @param merger 同じ版を元にした更新同士のマージ
+     * @return 実際に更新したエンティティ(同じ版の更新をまとめた場合は共有される)
+     */
+    public <T> T submit(Object key, Object lockValue, T entity, UnaryOperator<T> writer, ConflictMerger<T> merger) {
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), stripes.length)];
+        Pending<T> pending = new Pending<>(lockValue, entity);
+        Batch batch;
+        boolean leader = false;
+        boolean contended = false;
+        synchronized (stripe) {
+            stripe.inFlight++;
+            batch = stripe.batches.get(key);
+            if (batch == null) {
+                batch = new Batch();
+                stripe.batches.put(key, batch);
+                leader = true;
+                contended = stripe.inFlight > 1;
+            }
+            batch.items.add(pending);
+        }
+
+        try {
+            if (leader) {
+                // 他に実行中の更新がなければ、後続を待っても集まる見込みが薄いため待たない
+                if (contended) {
+                    waitForWindow();
+                }
+                synchronized (stripe) {
+                    stripe.batches.remove(key, batch);
+                }
+                flush(batch, writer, merger);
+            }
+            return pending.result.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        } finally {
+            synchronized (stripe) {
+                stripe.inFlight--;
+            }
+        }
+    }
+
+    /**
+     * 集まった更新を楽観ロック値ごとにマージし、版ごとに1回ずつ更新して各呼び出し元へ結果を渡す。
+     */
+    @SuppressWarnings("unchecked")
+    private <T> void flush(Batch batch, UnaryOperator<T> writer, ConflictMerger<T> merger) {
+        Map<Object, List<Pending<T>>> groups = new LinkedHashMap<>();
+        for (Pending<?> item : batch.items) {
+            Pending<T> pending = (Pending<T>) item;
+            groups.computeIfAbsent(pending.lockValue, k -> new ArrayList<>()).add(pending);
+        }
+        for (List<Pending<T>> group : groups.values()) {
+            try {
+                T merged = group.get(0).entity;
+                for (int i = 1; i < group.size(); i++) {
+                    merged = merger.merge(merged, group.get(i).entity);
+                }
+                T stored = writer.apply(merged);
+                group.forEach(pending -> pending.result.complete(stored));
+            } catch (RuntimeException | Error ex) {
+                group.forEach(pending -> pending.result.completeExceptionally(ex));
+            }
+        }
+    }
+
+    private void waitForWindow() {
+        if (windowMillis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(windowMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 主キーの振り分け先。時間窓の間に集まった主キーごとの更新と、実行中の呼び出し元の数を保持する。
+    private static final class Stripe {
+        private final Map<Object, Batch> batches = new HashMap<>();
+        private int inFlight;
+    }
+
+    // 1つの時間窓に集まった同一主キーへの更新。
+    private static final class Batch {
+        private final List<Pending<?>> items = new ArrayList<>();
+    }
+
+    // 呼び出し元1件分の更新内容と、その結果の受け渡し先。
+    private static final class Pending<T> {
+        private final Object lockValue;
+        private final T entity;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Pending(Object lockValue, T entity) {
+            this.lockValue = lockValue;
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.optimisticlock.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// Spring MVCのメッセージ変換を通らずにJSONを扱う箇所(ページングのカーソル、ストリーミング出力)で、
+// Spring Bootが構成したObjectMapperを共有するための参照。
+public final class Json {
+
+    // 起動時にuseで設定されるまで(単体テストなど)の代替。Jackson2ObjectMapperBuilderの既定に、日時のISO-8601出力を加えたもの
+    private static volatile ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+        .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+        .build();
+
+    private Json() {
+    }
+
+    /**
+     * 共有しているObjectMapperを取得する。
+     * @return Spring Bootが構成したObjectMapper(起動前は代替)
+     */
+    public static ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * Spring Bootが構成したObjectMapperを共有する。起動時に一度だけ呼び出す。
+     * @param objectMapper Spring Bootが構成したObjectMapper
+     */
+    public static void use(ObjectMapper objectMapper) {
+        mapper = objectMapper;
+    }
+}
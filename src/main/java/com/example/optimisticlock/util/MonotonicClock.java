@@ -0,0 +1,67 @@
+package com.example.optimisticlock.util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ミリ秒精度で単調増加する日時を払い出す時計。同一ミリ秒内の連続呼び出しでも値が重複しない。
+// 払い出した値はそのまま最終更新日時カラムへ書き込むため、カラムはDATETIME(3)以上とする(DATETIME(0)では丸められ、次の更新が競合扱いになる)。
+public final class MonotonicClock {
+
+    // DBのタイムゾーンで採番するプロセス共通のインスタンス。useZoneで設定されるまではJVMの既定タイムゾーンを使う
+    private static volatile MonotonicClock shared = new MonotonicClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private final AtomicLong lastMillis = new AtomicLong(Long.MIN_VALUE);
+
+    public MonotonicClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * プロセス共通のインスタンスを取得する。
+     * @return 単調増加する時計
+     */
+    public static MonotonicClock shared() {
+        return shared;
+    }
+
+    /**
+     * プロセス共通のインスタンスを、DBのタイムゾーン(接続設定のserverTimezone)で採番するものに置き換える。
+     * 起動時に一度だけ呼び出す。
+     * @param zone DBのタイムゾーン
+     * @return 置き換えた時計
+     */
+    public static MonotonicClock useZone(ZoneId zone) {
+        MonotonicClock clock = new MonotonicClock(Clock.system(zone));
+        shared = clock;
+        return clock;
+    }
+
+    /**
+     * 前回払い出した値より必ず大きい日時を取得する。
+     * システム時計が進んでいない・戻った場合は前回値に1ミリ秒加算する。
+     * @return ミリ秒精度の日時
+     */
+    public LocalDateTime next() {
+        long now = clock.millis();
+        long millis = lastMillis.updateAndGet(last -> last >= now ? last + 1 : now);
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), clock.getZone());
+    }
+
+    /**
+     * 指定日時より必ず後となる日時を取得する。楽観ロック値が更新前と一致しないことを保証する。
+     * @param previous 更新前の日時(nullの場合は無視する)
+     * @return ミリ秒精度の日時
+     */
+    public LocalDateTime nextAfter(LocalDateTime previous) {
+        LocalDateTime next = next();
+        if (previous != null && !next.isAfter(previous)) {
+            return previous.truncatedTo(ChronoUnit.MILLIS).plus(1, ChronoUnit.MILLIS);
+        }
+        return next;
+    }
+}
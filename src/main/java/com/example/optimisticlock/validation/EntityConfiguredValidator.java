@@ -1,13 +1,13 @@
 package com.example.optimisticlock.validation;
 
-import com.example.optimisticlock.annotation.TableName;
 import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
 
-import javax.persistence.Id;
-import java.lang.reflect.Field;
-
+// エンティティに@TableNameと@Idが揃っているかを検証する。
+// SQL生成と同じEntityMetadataの解析結果を使うため、起動時のウォームアップ後はクラスごとのキャッシュ参照のみで判定できる。
 public class EntityConfiguredValidator implements ConstraintValidator<EntityConfigured, BaseEntity> {
 
     @Override
@@ -17,8 +17,9 @@ public class EntityConfiguredValidator implements ConstraintValidator<EntityConf
         }
 
         Class<?> entityClass = value.getClass();
-        boolean hasTableName = entityClass.isAnnotationPresent(TableName.class);
-        boolean hasIdField = hasIdField(entityClass);
+        EntityMetadata metadata = EntityMetadataRegistry.get(entityClass);
+        boolean hasTableName = metadata.hasTableName();
+        boolean hasIdField = metadata.hasIdColumns();
 
         if (hasTableName && hasIdField) {
             return true;
@@ -37,17 +38,4 @@ public class EntityConfiguredValidator implements ConstraintValidator<EntityConf
         }
         return false;
     }
-
-    private boolean hasIdField(Class<?> type) {
-        Class<?> current = type;
-        while (current != null && current != Object.class) {
-            for (Field field : current.getDeclaredFields()) {
-                if (field.isAnnotationPresent(Id.class)) {
-                    return true;
-                }
-            }
-            current = current.getSuperclass();
-        }
-        return false;
-    }
 }
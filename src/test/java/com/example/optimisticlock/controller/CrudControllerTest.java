@@ -4,17 +4,37 @@ import com.example.optimisticlock.annotation.TableName;
 import com.example.optimisticlock.entity.BaseEntity;
 import com.example.optimisticlock.repository.BaseRepository;
 import com.example.optimisticlock.service.CrudService;
+import com.example.optimisticlock.service.DeleteAllResult;
+import com.example.optimisticlock.service.KeysetPage;
+import com.example.optimisticlock.service.MultiGetResult;
+import com.example.optimisticlock.util.Json;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
 import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
 import jakarta.validation.Validation;
+import jakarta.validation.ValidationException;
 import jakarta.validation.Validator;
+import org.apache.ibatis.cursor.Cursor;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.persistence.Id;
@@ -25,6 +45,8 @@ import static org.junit.jupiter.api.Assertions.*;
 @DisplayName("CrudControllerのデフォルト実装")
 class CrudControllerTest {
 
+    private static final LocalDateTime FDATE = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000);
+
     @Nested
     @DisplayName("create")
     class Create {
@@ -43,6 +65,37 @@ class CrudControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("createBatch")
+    class CreateBatch {
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            List<DummyEntity> entities = Arrays.asList(new DummyEntity(), new DummyEntity());
+
+            ResponseEntity<int[]> response = controller(service).createBatch(entities);
+
+            assertTrue(service.repository.insertCalled);
+            assertEquals(HttpStatus.CREATED, response.getStatusCode());
+            assertArrayEquals(new int[] {1, 1}, response.getBody());
+        }
+
+        @Test
+        @DisplayName("要素の検証_異常系")
+        void validatesEachElement() {
+            StubCrudService<NoTableEntity> service = new StubCrudService<>();
+            List<NoTableEntity> entities = Collections.singletonList(new NoTableEntity());
+
+            ConstraintViolationException ex = assertThrows(ConstraintViolationException.class,
+                () -> controller(service).createBatch(entities));
+
+            assertEquals(1, ex.getConstraintViolations().size());
+            assertFalse(service.repository.insertCalled);
+        }
+    }
+
     @Nested
     @DisplayName("findById")
     class FindById {
@@ -72,6 +125,40 @@ class CrudControllerTest {
             assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
             assertNull(response.getBody());
         }
+
+        @Test
+        @DisplayName("If-None-Match一致は304_正常系")
+        void notModified() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity current = new DummyEntity();
+            current.setZzcmnFdate(FDATE);
+            service.repository.findByIdResult = current;
+            service.repository.findLockValuesResult = Collections.singletonList(current);
+
+            ResponseEntity<DummyEntity> response =
+                controller(service).findById(new DummyEntity(), "\"" + FDATE + "\"");
+
+            assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+            assertNull(response.getBody());
+            assertEquals("\"" + FDATE + "\"", response.getHeaders().getETag());
+        }
+
+        @Test
+        @DisplayName("If-None-Match不一致は本文とETagを返す_正常系")
+        void modified() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity current = new DummyEntity();
+            current.setZzcmnFdate(FDATE);
+            service.repository.findByIdResult = current;
+            service.repository.findLockValuesResult = Collections.singletonList(current);
+
+            ResponseEntity<DummyEntity> response =
+                controller(service).findById(new DummyEntity(), "\"" + FDATE.minusSeconds(1) + "\"");
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertSame(current, response.getBody());
+            assertEquals("\"" + FDATE + "\"", response.getHeaders().getETag());
+        }
     }
 
     @Nested
@@ -93,6 +180,136 @@ class CrudControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("findByIds")
+    class FindByIds {
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity entity = new DummyEntity();
+            service.repository.findAllResult = Collections.singletonList(entity);
+
+            ResponseEntity<MultiGetResult<DummyEntity>> response =
+                controller(service).findByIds(Collections.singletonList(new DummyEntity()));
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertSame(entity, response.getBody().getItems().get(0));
+            assertTrue(response.getBody().getMissingKeys().isEmpty());
+        }
+
+        @Test
+        @DisplayName("要素の検証_異常系")
+        void validatesEachElement() {
+            StubCrudService<NoIdEntity> service = new StubCrudService<>();
+            List<NoIdEntity> entities = Collections.singletonList(new NoIdEntity());
+
+            ConstraintViolationException ex = assertThrows(ConstraintViolationException.class,
+                () -> controller(service).findByIds(entities));
+
+            assertEquals(1, ex.getConstraintViolations().size());
+        }
+    }
+
+    @Nested
+    @DisplayName("getAllProjected")
+    class GetAllProjected {
+
+        @Test
+        @DisplayName("指定フィールドのみ出力_正常系")
+        void returnsRequestedFieldsOnly() {
+            StubCrudService<DummyEntity> service = new StubCrudService<DummyEntity>() {
+                @Override
+                public List<DummyEntity> findAll(Collection<String> fields) {
+                    return getRepository().findAllProjected(fields);
+                }
+            };
+            DummyEntity entity = new DummyEntity();
+            entity.setZzcmnFname("user");
+            service.repository.findAllResult = Collections.singletonList(entity);
+
+            ResponseEntity<List<Map<String, Object>>> response =
+                controller(service).getAllProjected(Collections.singletonList("zzcmnFname"));
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            Map<String, Object> row = response.getBody().get(0);
+            assertEquals(Arrays.asList("id", "zzcmnFname"), Arrays.asList(row.keySet().toArray()));
+            assertEquals("user", row.get("zzcmnFname"));
+        }
+    }
+
+    @Nested
+    @DisplayName("streamAll")
+    class StreamAll {
+
+        @Test
+        @DisplayName("JSON配列の逐次出力_正常系")
+        void writesJsonArray() throws Exception {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity first = new DummyEntity();
+            first.setZzcmnFname("first");
+            DummyEntity second = new DummyEntity();
+            second.setZzcmnFname("second");
+            service.repository.findAllResult = Arrays.asList(first, second);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            controller(service).streamAll(response);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus());
+            String body = response.getContentAsString();
+            assertTrue(body.startsWith("[{"));
+            assertTrue(body.endsWith("}]"));
+            assertTrue(body.contains("\"zzcmnFname\":\"first\""));
+            assertTrue(body.indexOf("\"zzcmnFname\":\"first\"") < body.indexOf("\"zzcmnFname\":\"second\""));
+            assertTrue(service.repository.cursorClosed);
+        }
+
+        @Test
+        @DisplayName("Springと同じObjectMapperで出力_正常系")
+        void usesSharedObjectMapper() throws Exception {
+            ObjectMapper springMapper = Jackson2ObjectMapperBuilder.json()
+                .propertyNamingStrategy(PropertyNamingStrategies.SNAKE_CASE)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity entity = new DummyEntity();
+            entity.setZzcmnFdate(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000));
+            service.repository.findAllResult = Collections.singletonList(entity);
+            MockHttpServletResponse response = new MockHttpServletResponse();
+
+            ObjectMapper original = Json.mapper();
+            try {
+                Json.use(springMapper);
+                controller(service).streamAll(response);
+            } finally {
+                Json.use(original);
+            }
+
+            assertEquals(springMapper.writeValueAsString(service.repository.findAllResult),
+                response.getContentAsString());
+            assertTrue(response.getContentAsString().contains("\"zzcmn_fdate\":\"2024-01-01T12:00:00.123\""));
+        }
+    }
+
+    @Nested
+    @DisplayName("getPage")
+    class GetPage {
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            service.repository.findAllResult = Collections.singletonList(new DummyEntity());
+
+            ResponseEntity<KeysetPage<DummyEntity>> response = controller(service).getPage(null, 10);
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(service.repository.findAllResult, response.getBody().getItems());
+            assertNull(response.getBody().getNextCursor());
+        }
+    }
+
     @Nested
     @DisplayName("update")
     class Update {
@@ -109,6 +326,73 @@ class CrudControllerTest {
             assertEquals(HttpStatus.OK, response.getStatusCode());
             assertSame(entity, response.getBody());
         }
+
+        @Test
+        @DisplayName("If-Matchの値で楽観ロック_正常系")
+        void ifMatch() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity entity = new DummyEntity();
+            entity.setZzcmnFdate(FDATE.minusSeconds(1));
+
+            controller(service).update(entity, "\"" + FDATE + "\"");
+
+            assertEquals(FDATE, service.repository.updateLockValue);
+        }
+
+        @Test
+        @DisplayName("findByIdのETagをそのままIf-Matchに使える(JSONの日時書式を変更していても)_正常系")
+        void ifMatchRoundTrip() {
+            DateTimeFormatter pattern = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            ObjectMapper customized = Jackson2ObjectMapperBuilder.json()
+                .serializerByType(LocalDateTime.class, new LocalDateTimeSerializer(pattern))
+                .deserializerByType(LocalDateTime.class, new LocalDateTimeDeserializer(pattern))
+                .build();
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity current = new DummyEntity();
+            current.setZzcmnFdate(FDATE);
+            service.repository.findByIdResult = current;
+            DummyEntity entity = new DummyEntity();
+
+            ObjectMapper original = Json.mapper();
+            try {
+                Json.use(customized);
+                String etag = controller(service).findById(new DummyEntity(), null).getHeaders().getETag();
+                controller(service).update(entity, etag);
+            } finally {
+                Json.use(original);
+            }
+
+            assertEquals(FDATE, service.repository.updateLockValue);
+        }
+
+        @Test
+        @DisplayName("弱いETagのIf-Match_異常系")
+        void weakIfMatch() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+
+            assertThrows(ValidationException.class,
+                () -> controller(service).update(new DummyEntity(), "W/\"" + FDATE + "\""));
+            assertFalse(service.repository.updateCalled);
+        }
+    }
+
+    @Nested
+    @DisplayName("patch")
+    class Patch {
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+            DummyEntity entity = new DummyEntity();
+
+            ResponseEntity<DummyEntity> response =
+                controller(service).patch(entity, Collections.singleton("zzcmnFname"));
+
+            assertTrue(service.repository.updateCalled);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertSame(entity, response.getBody());
+        }
     }
 
     @Nested
@@ -129,12 +413,51 @@ class CrudControllerTest {
         }
     }
 
+    @Nested
+    @DisplayName("deleteBatch")
+    class DeleteBatch {
+
+        @Test
+        @DisplayName("該当なしキーの報告_正常系")
+        void reportsMissingKeys() {
+            StubCrudService<DummyEntity> service = new StubCrudService<>();
+
+            ResponseEntity<DeleteAllResult> response =
+                controller(service).deleteBatch(Collections.singletonList(new DummyEntity()));
+
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            assertEquals(0, response.getBody().getDeletedCount());
+            assertEquals(1, response.getBody().getMissingKeys().size());
+            assertFalse(service.repository.deleteCalled);
+        }
+
+        @Test
+        @DisplayName("要素の検証_異常系")
+        void validatesEachElement() {
+            StubCrudService<NoIdEntity> service = new StubCrudService<>();
+            List<NoIdEntity> entities = Collections.singletonList(new NoIdEntity());
+
+            ConstraintViolationException ex = assertThrows(ConstraintViolationException.class,
+                () -> controller(service).deleteBatch(entities));
+
+            assertEquals(1, ex.getConstraintViolations().size());
+            assertFalse(service.repository.deleteCalled);
+        }
+    }
+
     @Nested
     @DisplayName("validation")
     class ValidationCases {
 
         private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
+        @Test
+        @DisplayName("設定済みエンティティ_正常系")
+        void configuredEntity() {
+            assertTrue(validator.validate(new DummyEntity()).isEmpty());
+            assertTrue(validator.validate(new DummyEntity()).isEmpty());
+        }
+
         @Test
         @DisplayName("@TableName欠落_異常系")
         void missingTableName() {
@@ -177,10 +500,14 @@ class CrudControllerTest {
 
     private static class StubRepository<E extends BaseEntity> implements BaseRepository<E> {
         boolean insertCalled;
+        boolean insertAllCalled;
         boolean updateCalled;
         boolean deleteCalled;
+        Object updateLockValue;
         E findByIdResult;
         List<E> findAllResult = Collections.emptyList();
+        List<E> findLockValuesResult = Collections.emptyList();
+        boolean cursorClosed;
 
         @Override
         public int insert(E entity) {
@@ -189,17 +516,41 @@ class CrudControllerTest {
         }
 
         @Override
-        public int update(E entity) {
+        public int insertAll(List<E> entities) {
+            insertAllCalled = true;
+            return entities.size();
+        }
+
+        @Override
+        public int update(E entity, LocalDateTime nextZzcmnFdate) {
+            updateCalled = true;
+            updateLockValue = entity.getZzcmnFdate();
+            return 1;
+        }
+
+        @Override
+        public int patch(E entity, Collection<String> fields, LocalDateTime nextZzcmnFdate) {
             updateCalled = true;
             return 1;
         }
 
+        @Override
+        public int upsert(E entity, LocalDateTime nextZzcmnFdate) {
+            return 1;
+        }
+
         @Override
         public int delete(E entity) {
             deleteCalled = true;
             return 1;
         }
 
+        @Override
+        public int deleteAll(List<E> entities) {
+            deleteCalled = true;
+            return entities.size();
+        }
+
         @Override
         public E findById(E entity) {
             return findByIdResult;
@@ -210,6 +561,56 @@ class CrudControllerTest {
             return findAllResult;
         }
 
+        @Override
+        public List<E> findByIds(List<E> entities) {
+            return findAllResult;
+        }
+
+        @Override
+        public E findByIdProjected(E entity, Collection<String> fields) {
+            return findByIdResult;
+        }
+
+        @Override
+        public List<E> findAllProjected(Collection<String> fields) {
+            return findAllResult;
+        }
+
+        @Override
+        public List<E> findPage(Map<String, Object> cursor, int limit) {
+            return findAllResult;
+        }
+
+        @Override
+        public Cursor<E> streamAll() {
+            return new Cursor<E>() {
+                @Override
+                public boolean isOpen() {
+                    return !cursorClosed;
+                }
+
+                @Override
+                public boolean isConsumed() {
+                    return false;
+                }
+
+                @Override
+                public int getCurrentIndex() {
+                    return -1;
+                }
+
+                @Override
+                public Iterator<E> iterator() {
+                    return findAllResult.iterator();
+                }
+
+                @Override
+                public void close() {
+                    cursorClosed = true;
+                }
+            };
+        }
+
         @Override
         public int checkUpdate(E entity) {
             return 1;
@@ -219,6 +620,34 @@ class CrudControllerTest {
         public int checkUpdateList(List<E> entities) {
             return entities.size();
         }
+
+        @Override
+        public List<E> findLockValues(List<E> entities) {
+            return findLockValuesResult;
+        }
+
+        @Override
+        public List<E> findStamps(List<E> entities) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void createLockCheckTable() {
+        }
+
+        @Override
+        public int insertLockCheckRows(List<E> entities) {
+            return entities.size();
+        }
+
+        @Override
+        public int countLockCheckMatches() {
+            return 0;
+        }
+
+        @Override
+        public void dropLockCheckTable() {
+        }
     }
 
     @TableName("dummy_entity")
@@ -7,6 +7,10 @@ import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
@@ -25,11 +29,26 @@ class GlobalExceptionHandlerTest {
         void normal() {
             OptimisticLockException ex = new OptimisticLockException("Optimistic conflict");
 
-            ResponseEntity<String> response = handler.handleOptimisticLockException(ex);
+            ResponseEntity<Object> response = handler.handleOptimisticLockException(ex);
 
             assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
             assertEquals("Optimistic conflict", response.getBody());
             assertSame(String.class, response.getBody().getClass());
         }
+
+        @Test
+        @DisplayName("競合キーあり_正常系")
+        void withConflictKeys() {
+            OptimisticLockException ex = new OptimisticLockException("Optimistic conflict",
+                Collections.singletonList(Collections.singletonMap("id", 7L)));
+
+            ResponseEntity<Object> response = handler.handleOptimisticLockException(ex);
+
+            Map<String, Object> expected = new LinkedHashMap<>();
+            expected.put("message", "Optimistic conflict");
+            expected.put("conflictKeys", Collections.singletonList(Collections.singletonMap("id", 7L)));
+            assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+            assertEquals(expected, response.getBody());
+        }
     }
 }
@@ -3,13 +3,16 @@ package com.example.optimisticlock.repository;
 import com.example.optimisticlock.entity.BaseEntity;
 import org.apache.ibatis.annotations.DeleteProvider;
 import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.SelectProvider;
 import org.apache.ibatis.annotations.UpdateProvider;
+import org.apache.ibatis.mapping.ResultSetType;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Method;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -34,13 +37,26 @@ class BaseRepositoryAnnotationTest {
         }
     }
 
+    @Nested
+    @DisplayName("insertAll")
+    class InsertAll {
+        @Test
+        @DisplayName("正常系")
+        void hasInsertProvider() throws NoSuchMethodException {
+            Method method = repositoryType.getMethod("insertAll", List.class);
+            InsertProvider provider = method.getAnnotation(InsertProvider.class);
+            assertNotNull(provider);
+            assertEquals(BaseRepositoryProvider.class, provider.type());
+        }
+    }
+
     @Nested
     @DisplayName("update")
     class Update {
         @Test
         @DisplayName("正常系")
         void hasUpdateProvider() throws NoSuchMethodException {
-            Method method = repositoryType.getMethod("update", BaseEntity.class);
+            Method method = repositoryType.getMethod("update", BaseEntity.class, LocalDateTime.class);
             UpdateProvider provider = method.getAnnotation(UpdateProvider.class);
             assertNotNull(provider);
             assertEquals(BaseRepositoryProvider.class, provider.type());
@@ -86,6 +102,21 @@ class BaseRepositoryAnnotationTest {
         }
     }
 
+    @Nested
+    @DisplayName("streamAll")
+    class StreamAll {
+        @Test
+        @DisplayName("正常系")
+        void hasFetchSizeOptions() throws NoSuchMethodException {
+            Method method = repositoryType.getMethod("streamAll");
+            assertNotNull(method.getAnnotation(SelectProvider.class));
+            Options options = method.getAnnotation(Options.class);
+            assertNotNull(options);
+            assertEquals(Integer.MIN_VALUE, options.fetchSize());
+            assertEquals(ResultSetType.FORWARD_ONLY, options.resultSetType());
+        }
+    }
+
     @Nested
     @DisplayName("checkUpdate")
     class CheckUpdate {
@@ -8,6 +8,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import javax.persistence.Id;
+import javax.persistence.Version;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.Arrays;
@@ -46,6 +47,17 @@ class BaseRepositoryProviderTest {
             )), extractColumns(sql));
         }
 
+        @Test
+        @DisplayName("複数行INSERT文")
+        void insertAllGeneratesRowPerEntity() {
+            String sql = squash(provider.insertAll(Arrays.asList(createEntity(), createEntity())));
+
+            assertTrue(sql.startsWith("INSERT INTO test_entity (ID, VALUE, ZZCMN_CNAME"));
+            assertTrue(sql.contains("(#{list[0].id}, #{list[0].value},"));
+            assertTrue(sql.contains("(#{list[1].id}, #{list[1].value},"));
+            assertTrue(sql.endsWith("#{list[1].zzcmnFdate})"));
+        }
+
         @Test
         @DisplayName("UPDATE文")
         void updateUpdatesMutableColumns() {
@@ -54,22 +66,59 @@ class BaseRepositoryProviderTest {
             String normalized = squash(provider.update(entity));
 
             assertTrue(normalized.startsWith("UPDATE test_entity"));
-            assertTrue(normalized.contains("VALUE = #{value}"));
-            assertTrue(normalized.contains("ZZCMN_FNAME = #{zzcmnFname}"));
+            assertTrue(normalized.contains("VALUE = #{entity.value}"));
+            assertTrue(normalized.contains("ZZCMN_FNAME = #{entity.zzcmnFname}"));
             assertFalse(normalized.contains("ZZCMN_CNAME"));
-            assertTrue(normalized.contains("ZZCMN_FDATE = NOW()"));
+            assertTrue(normalized.contains("ZZCMN_FDATE = #{nextZzcmnFdate}"));
+            assertFalse(normalized.contains("NOW("));
+            assertTrue(normalized.endsWith("WHERE (ID = #{entity.id} AND ZZCMN_FDATE = #{entity.zzcmnFdate})"));
             assertFalse(normalized.contains("version"));
         }
 
+        @Test
+        @DisplayName("部分更新UPDATE文")
+        void patchSetsRequestedColumnsOnly() {
+            String normalized = squash(provider.patch(createEntity(), Collections.singleton("value")));
+
+            assertEquals("UPDATE test_entity SET VALUE = #{entity.value}, "
+                + "ZZCMN_FDATE = #{nextZzcmnFdate} "
+                + "WHERE (ID = #{entity.id} AND ZZCMN_FDATE = #{entity.zzcmnFdate})", normalized);
+        }
+
+        @Test
+        @DisplayName("部分更新UPDATE文 フィールドの組み合わせごとに再利用")
+        void patchReusesSqlPerFieldSet() {
+            String first = provider.patch(createEntity(), new HashSet<>(Arrays.asList("value", "zzcmnFname")));
+            String second = provider.patch(createEntity(), Arrays.asList("zzcmnFname", "value"));
+
+            assertSame(first, second);
+            assertTrue(squash(first).contains("SET VALUE = #{entity.value}, ZZCMN_FNAME = #{entity.zzcmnFname}"));
+        }
+
+        @Test
+        @DisplayName("UPSERT文")
+        void upsertGuardsExistingRowWithLockColumn() {
+            String normalized = squash(provider.upsert(createEntity()));
+
+            assertTrue(normalized.startsWith("INSERT INTO test_entity"));
+            assertTrue(normalized.contains("ON DUPLICATE KEY UPDATE"));
+            assertTrue(normalized.contains(
+                "VALUE = IF(ZZCMN_FDATE <=> #{entity.zzcmnFdate}, #{entity.value}, VALUE)"));
+            assertFalse(normalized.contains("ZZCMN_CNAME = IF"));
+            assertFalse(normalized.contains("ID = IF"));
+            assertTrue(normalized.endsWith(
+                "ZZCMN_FDATE = IF(ZZCMN_FDATE <=> #{entity.zzcmnFdate}, #{nextZzcmnFdate}, ZZCMN_FDATE)"));
+        }
+
         @Test
         @DisplayName("DELETE文")
-        void deleteUsesPrimaryKeyOnly() {
+        void deleteUsesPrimaryKeyAndLockColumn() {
             TestEntity entity = createEntity();
 
             String normalized = squash(provider.delete(entity));
 
             assertTrue(normalized.startsWith("DELETE FROM test_entity"));
-            assertTrue(normalized.contains("ID = #{id}"));
+            assertTrue(normalized.endsWith("WHERE (ID = #{id} AND ZZCMN_FDATE = #{zzcmnFdate})"));
             assertFalse(normalized.contains("version"));
         }
 
@@ -92,6 +141,68 @@ class BaseRepositoryProviderTest {
             assertEquals("SELECT * FROM test_entity", squash(sql));
         }
 
+        @Test
+        @DisplayName("SELECT(複数主キー)")
+        void findByIdsUsesInList() {
+            String sql = squash(provider.findByIds(Arrays.asList(createEntity(), createEntity())));
+
+            assertEquals("SELECT * FROM test_entity WHERE ID IN (#{list[0].id}, #{list[1].id})", sql);
+        }
+
+        @Test
+        @DisplayName("SELECT(複数主キー) 複合主キー")
+        void findByIdsUsesRowValueForCompositeKey() {
+            String sql = squash(provider.findByIds(Collections.singletonList(new CompositeEntity())));
+
+            assertEquals("SELECT * FROM composite_entity WHERE (GROUP_ID, SEQ) IN "
+                + "((#{list[0].groupId}, #{list[0].seq}))", sql);
+        }
+
+        @Test
+        @DisplayName("射影SELECT(単体)")
+        void findByIdProjectedSelectsRequestedColumns() {
+            String sql = squash(provider.findByIdProjected(createEntity(), Collections.singletonList("value")));
+
+            assertEquals("SELECT ID, VALUE FROM test_entity WHERE (ID = #{entity.id})", sql);
+        }
+
+        @Test
+        @DisplayName("射影SELECT(全件)")
+        void findAllProjectedKeepsDeclarationOrder() {
+            String sql = squash(provider.findAllProjected(Arrays.asList("zzcmnFdate", "value"),
+                createProviderContext(TestRepository.class)));
+
+            assertEquals("SELECT ID, VALUE, ZZCMN_FDATE FROM test_entity", sql);
+        }
+
+        @Test
+        @DisplayName("キーセットページング")
+        void findPageOrdersByPrimaryKey() {
+            ProviderContext context = createProviderContext(TestRepository.class);
+
+            assertEquals("SELECT * FROM test_entity ORDER BY ID LIMIT #{limit}",
+                squash(provider.findPage(null, 10, context)));
+            assertEquals("SELECT * FROM test_entity WHERE (ID > #{cursor.id}) ORDER BY ID LIMIT #{limit}",
+                squash(provider.findPage(Collections.singletonMap("id", 1L), 10, context)));
+        }
+
+        @Test
+        @DisplayName("キーセットページング 複合主キー")
+        void findPageExpandsCompositeKey() {
+            String sql = squash(provider.findPage(Collections.singletonMap("groupId", 1L), 10,
+                createProviderContext(CompositeRepository.class)));
+
+            assertEquals("SELECT * FROM composite_entity WHERE ((GROUP_ID > #{cursor.groupId}) "
+                + "OR (GROUP_ID = #{cursor.groupId} AND SEQ > #{cursor.seq})) "
+                + "ORDER BY GROUP_ID, SEQ LIMIT #{limit}", sql);
+        }
+
+        @Test
+        @DisplayName("カーソル取得")
+        void streamAllSelectsAllRows() {
+            assertEquals("SELECT * FROM test_entity", squash(provider.streamAll(createProviderContext(TestRepository.class))));
+        }
+
         @Test
         @DisplayName("checkUpdateList")
         void checkUpdateListUsesLastUpdateTimestamp() {
@@ -99,9 +210,61 @@ class BaseRepositoryProviderTest {
 
             String normalized = squash(provider.checkUpdateList(List.of(entity)));
 
-            assertTrue(normalized.startsWith("SELECT COUNT(1) FROM test_entity"));
-            assertTrue(normalized.contains("ID = #{list[0].id}"));
-            assertTrue(normalized.contains("ZZCMN_FDATE = #{list[0].zzcmnFdate}"));
+            assertEquals("SELECT COUNT(1) FROM test_entity WHERE (ID, ZZCMN_FDATE) IN "
+                + "((#{list[0].id}, #{list[0].zzcmnFdate}))", normalized);
+        }
+
+        @Test
+        @DisplayName("checkUpdateList 複数件")
+        void checkUpdateListUsesRowValueIn() {
+            String normalized = squash(provider.checkUpdateList(Arrays.asList(createEntity(), createEntity())));
+
+            assertTrue(normalized.endsWith("IN ((#{list[0].id}, #{list[0].zzcmnFdate}), "
+                + "(#{list[1].id}, #{list[1].zzcmnFdate}))"));
+            assertFalse(normalized.contains(" OR "));
+        }
+
+        @Test
+        @DisplayName("件数ごとのSQLを再利用")
+        void reusesSqlPerSize() {
+            String first = provider.insertAll(Arrays.asList(createEntity(), createEntity()));
+            String second = provider.insertAll(Arrays.asList(createEntity(), createEntity()));
+
+            assertSame(first, second);
+            assertNotEquals(first, provider.insertAll(Collections.singletonList(createEntity())));
+            assertSame(provider.findByIdProjected(createEntity(), Collections.singletonList("value")),
+                provider.findByIdProjected(createEntity(), Collections.singletonList("value")));
+        }
+
+        @Test
+        @DisplayName("一括DELETE文")
+        void deleteAllMatchesKeyAndTimestamp() {
+            String sql = squash(provider.deleteAll(Arrays.asList(createEntity(), createEntity())));
+
+            assertEquals("DELETE FROM test_entity WHERE (ID, ZZCMN_FDATE) IN "
+                + "((#{list[0].id}, #{list[0].zzcmnFdate}), (#{list[1].id}, #{list[1].zzcmnFdate}))", sql);
+        }
+
+        @Test
+        @DisplayName("主キーと最終更新日時の取得")
+        void findLockValuesSelectsKeyAndTimestamp() {
+            String sql = squash(provider.findLockValues(Arrays.asList(createEntity(), createEntity())));
+
+            assertEquals("SELECT ID, ZZCMN_FDATE FROM test_entity WHERE ID IN (#{list[0].id}, #{list[1].id})", sql);
+        }
+
+        @Test
+        @DisplayName("一時テーブル検証")
+        void lockCheckTableStatements() {
+            ProviderContext context = createProviderContext(TestRepository.class);
+
+            assertEquals("CREATE TEMPORARY TABLE tmp_lock_check_test_entity AS SELECT ID, ZZCMN_FDATE "
+                + "FROM test_entity WHERE 1 = 0", provider.createLockCheckTable(context));
+            assertEquals("INSERT INTO tmp_lock_check_test_entity (ID, ZZCMN_FDATE) VALUES "
+                + "(#{list[0].id}, #{list[0].zzcmnFdate})", provider.insertLockCheckRows(List.of(createEntity())));
+            assertTrue(provider.countLockCheckMatches(context).contains(
+                "c.ID = e.ID AND c.ZZCMN_FDATE = e.ZZCMN_FDATE"));
+            assertEquals("DROP TEMPORARY TABLE IF EXISTS tmp_lock_check_test_entity", provider.dropLockCheckTable(context));
         }
 
         @Test
@@ -119,6 +282,74 @@ class BaseRepositoryProviderTest {
         }
     }
 
+    @Nested
+    @DisplayName("バージョンカラム方式")
+    class VersionColumn {
+
+        @Test
+        @DisplayName("UPDATE文")
+        void updateIncrementsAndComparesVersion() {
+            String sql = squash(provider.update(new VersionedEntity()));
+
+            assertTrue(sql.contains("VALUE = #{entity.value}"));
+            assertTrue(sql.contains("ZZCMN_FDATE = #{nextZzcmnFdate}"));
+            assertTrue(sql.contains("LOCK_VERSION = LOCK_VERSION + 1"));
+            assertFalse(sql.contains("LOCK_VERSION = #{entity.lockVersion},"));
+            assertTrue(sql.endsWith("WHERE (ID = #{entity.id} AND LOCK_VERSION = #{entity.lockVersion})"));
+        }
+
+        @Test
+        @DisplayName("UPSERT文")
+        void upsertAssignsVersionLast() {
+            String sql = squash(provider.upsert(new VersionedEntity()));
+
+            assertTrue(sql.contains("COALESCE(#{entity.lockVersion}, 0)"));
+            assertTrue(sql.contains("VALUE = IF(LOCK_VERSION <=> #{entity.lockVersion}, #{entity.value}, VALUE)"));
+            assertTrue(sql.contains("ZZCMN_FDATE = IF(LOCK_VERSION <=> #{entity.lockVersion}, "
+                + "#{nextZzcmnFdate}, ZZCMN_FDATE)"));
+            assertTrue(sql.endsWith(
+                "LOCK_VERSION = IF(LOCK_VERSION <=> #{entity.lockVersion}, LOCK_VERSION + 1, LOCK_VERSION)"));
+        }
+
+        @Test
+        @DisplayName("部分更新UPDATE文")
+        void patchIncrementsAndComparesVersion() {
+            String sql = squash(provider.patch(new VersionedEntity(), Collections.singleton("value")));
+
+            assertTrue(sql.contains("LOCK_VERSION = LOCK_VERSION + 1"));
+            assertTrue(sql.endsWith("WHERE (ID = #{entity.id} AND LOCK_VERSION = #{entity.lockVersion})"));
+        }
+
+        @Test
+        @DisplayName("DELETE文")
+        void deleteComparesVersion() {
+            assertTrue(squash(provider.delete(new VersionedEntity()))
+                .endsWith("WHERE (ID = #{id} AND LOCK_VERSION = #{lockVersion})"));
+        }
+
+        @Test
+        @DisplayName("INSERT文")
+        void insertDefaultsVersionToZero() {
+            assertTrue(squash(provider.insert(new VersionedEntity())).contains("COALESCE(#{lockVersion}, 0)"));
+        }
+
+        @Test
+        @DisplayName("楽観ロック検証SELECT")
+        void checkUpdateComparesVersion() {
+            assertTrue(squash(provider.checkUpdate(new VersionedEntity())).contains("LOCK_VERSION = #{lockVersion}"));
+            assertEquals("SELECT COUNT(1) FROM versioned_entity WHERE (ID, LOCK_VERSION) IN "
+                + "((#{list[0].id}, #{list[0].lockVersion}))",
+                squash(provider.checkUpdateList(Collections.singletonList(new VersionedEntity()))));
+        }
+
+        @Test
+        @DisplayName("主キーと最終更新日時の取得はバージョンによらない")
+        void findStampsSelectsTimestamp() {
+            assertEquals("SELECT ID, ZZCMN_FDATE FROM versioned_entity WHERE ID IN (#{list[0].id})",
+                squash(provider.findStamps(Collections.singletonList(new VersionedEntity()))));
+        }
+    }
+
     @Nested
     @DisplayName("異常系")
     class ExceptionalCases {
@@ -141,6 +372,25 @@ class BaseRepositoryProviderTest {
             assertTrue(ex.getMessage().contains(MissingIdEntity.class.getName()));
         }
 
+        @Test
+        @DisplayName("射影に存在しないフィールド_異常系")
+        void unknownProjectionField() {
+            IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> provider.findByIdProjected(createEntity(), Collections.singletonList("password")));
+            assertTrue(ex.getMessage().contains("password"));
+        }
+
+        @Test
+        @DisplayName("部分更新に主キー・監査項目を指定_異常系")
+        void patchRejectsNonUpdatableField() {
+            assertThrows(IllegalArgumentException.class,
+                () -> provider.patch(createEntity(), Collections.singleton("id")));
+            assertThrows(IllegalArgumentException.class,
+                () -> provider.patch(createEntity(), Collections.singleton("zzcmnFdate")));
+            assertThrows(IllegalArgumentException.class,
+                () -> provider.patch(createEntity(), Collections.singleton("password")));
+        }
+
         @Test
         @DisplayName("エンティティ解決不可_異常系")
         void entityClassUnknown() {
@@ -219,6 +469,25 @@ class BaseRepositoryProviderTest {
 
     private interface TestRepository extends BaseRepository<TestEntity> {}
 
+    @TableName("versioned_entity")
+    private static class VersionedEntity extends BaseEntity {
+        @Id
+        private Long id;
+        private String value;
+        @Version
+        private Long lockVersion;
+    }
+
+    @TableName("composite_entity")
+    private static class CompositeEntity extends BaseEntity {
+        @Id
+        private Long groupId;
+        @Id
+        private Integer seq;
+    }
+
+    private interface CompositeRepository extends BaseRepository<CompositeEntity> {}
+
     private static class NoTableEntity extends BaseEntity {
         @Id
         private Long id;
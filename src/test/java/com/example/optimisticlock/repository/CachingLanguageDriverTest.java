@@ -0,0 +1,51 @@
+package com.example.optimisticlock.repository;
+
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// CachingLanguageDriverによるSqlSourceの再利用を検証するテスト。
+@DisplayName("CachingLanguageDriverの振る舞い")
+class CachingLanguageDriverTest {
+
+    private static final String SQL = "SELECT * FROM test_entity WHERE ID = #{id}";
+
+    @Nested
+    @DisplayName("createSqlSource")
+    class CreateSqlSource {
+
+        @Test
+        @DisplayName("同一SQL・同一パラメータ型は解析結果を再利用_正常系")
+        void reusesParsedSource() {
+            CachingLanguageDriver driver = new CachingLanguageDriver();
+            Configuration configuration = new Configuration();
+
+            SqlSource first = driver.createSqlSource(configuration, SQL, Map.class);
+            SqlSource second = driver.createSqlSource(configuration, new String(SQL), Map.class);
+
+            assertSame(first, second);
+            assertEquals("SELECT * FROM test_entity WHERE ID = ?",
+                first.getBoundSql(Collections.singletonMap("id", 1L)).getSql());
+        }
+
+        @Test
+        @DisplayName("パラメータ型が異なれば別に解析_正常系")
+        void separatesParameterTypes() {
+            CachingLanguageDriver driver = new CachingLanguageDriver();
+            Configuration configuration = new Configuration();
+
+            SqlSource forMap = driver.createSqlSource(configuration, SQL, Map.class);
+            SqlSource forHashMap = driver.createSqlSource(configuration, SQL, HashMap.class);
+
+            assertNotSame(forMap, forHashMap);
+        }
+    }
+}
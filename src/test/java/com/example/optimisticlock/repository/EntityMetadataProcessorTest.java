@@ -0,0 +1,159 @@
+package com.example.optimisticlock.repository;
+
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// EntityMetadataProcessorが生成する定型SQL・アクセサーと、実行時の読み込みを検証するテスト。
+@DisplayName("EntityMetadataProcessorの振る舞い")
+class EntityMetadataProcessorTest {
+
+    private static final String ENTITY_SOURCE = "package gen;\n"
+        + "@com.example.optimisticlock.annotation.TableName(\"generated_entity\")\n"
+        + "public class GeneratedEntity extends com.example.optimisticlock.entity.BaseEntity {\n"
+        + "    @javax.persistence.Id private Long id;\n"
+        + "    String name;\n"
+        + "    public Long getId() { return id; }\n"
+        + "    public void setId(Long id) { this.id = id; }\n"
+        + "}\n";
+
+    private static final String NO_ID_SOURCE = "package gen;\n"
+        + "@com.example.optimisticlock.annotation.TableName(\"no_id_entity\")\n"
+        + "public class NoIdEntity extends com.example.optimisticlock.entity.BaseEntity {\n"
+        + "    private Long id;\n"
+        + "    public Long getId() { return id; }\n"
+        + "    public void setId(Long id) { this.id = id; }\n"
+        + "}\n";
+
+    private static final String NESTED_SOURCE = "package gen;\n"
+        + "public class Outer {\n"
+        + "    @com.example.optimisticlock.annotation.TableName(\"nested_entity\")\n"
+        + "    private static class NestedEntity extends com.example.optimisticlock.entity.BaseEntity {\n"
+        + "        @javax.persistence.Id private Long id;\n"
+        + "    }\n"
+        + "}\n";
+
+    @Nested
+    @DisplayName("生成")
+    class Generation {
+
+        @Test
+        @DisplayName("実行時と同じ定型SQLとアクセサーを生成_正常系")
+        void generatesStatementsAndAccessors(@TempDir Path dir) throws Exception {
+            DiagnosticCollector<JavaFileObject> diagnostics = compile(dir, "GeneratedEntity", ENTITY_SOURCE);
+
+            try (URLClassLoader loader = classLoader(dir)) {
+                Class<?> entityClass = loader.loadClass("gen.GeneratedEntity");
+                Class<?> generatedClass = loader.loadClass("gen.GeneratedEntity_Metadata");
+                EntityMetadata metadata = new EntityMetadata(entityClass);
+                EntityMetadata compiled = new EntityMetadata(
+                    entityClass.getName(), metadata.getTableName(), metadata.getColumns());
+
+                assertTrue(diagnostics.getDiagnostics().isEmpty(), diagnostics.getDiagnostics()::toString);
+                assertTrue(metadata.isGenerated());
+                assertEquals("generated_entity", generatedClass.getField(GeneratedSql.TABLE_NAME).get(null));
+                for (Map.Entry<String, String> statement : compiled.getFixedStatements().entrySet()) {
+                    assertEquals(statement.getValue(), generatedClass.getField(statement.getKey()).get(null));
+                }
+                // 生成済みの定数がそのまま使われる
+                assertSame(generatedClass.getField(GeneratedSql.INSERT).get(null), metadata.getInsertSql());
+
+                Object entity = metadata.getInstantiator().get();
+                assertSame(entityClass, entity.getClass());
+                metadata.getColumn("id").setValue(entity, 1L);
+                metadata.getColumn("name").setValue(entity, "first");
+                assertEquals(Long.valueOf(1L), metadata.getColumn("id").getValue(entity));
+                assertEquals("first", metadata.getColumn("name").getValue(entity));
+                assertEquals(Long.class, metadata.getColumn("id").getType());
+            }
+        }
+
+        @Test
+        @DisplayName("MyBatisのプロパティアクセスを生成したアクセサーで行う_正常系")
+        void wrapsGeneratedEntities(@TempDir Path dir) throws Exception {
+            compile(dir, "GeneratedEntity", ENTITY_SOURCE);
+
+            try (URLClassLoader loader = classLoader(dir)) {
+                Object entity = loader.loadClass("gen.GeneratedEntity").getDeclaredConstructor().newInstance();
+                Configuration configuration = new Configuration();
+                configuration.setObjectWrapperFactory(new EntityObjectWrapperFactory());
+                MetaObject metaObject = configuration.newMetaObject(entity);
+
+                metaObject.setValue("id", 7L);
+                metaObject.setValue("zzcmnFname", "tester");
+
+                assertTrue(configuration.getObjectWrapperFactory().hasWrapperFor(entity));
+                assertEquals(Long.valueOf(7L), metaObject.getValue("id"));
+                assertEquals("tester", metaObject.getValue("zzcmnFname"));
+                assertFalse(configuration.getObjectWrapperFactory().hasWrapperFor(new Object()));
+            }
+        }
+
+        @Test
+        @DisplayName("テーブル名が変わった生成クラスは使わない_正常系")
+        void ignoresStaleMetadata(@TempDir Path dir) throws Exception {
+            compile(dir, "GeneratedEntity", ENTITY_SOURCE);
+
+            try (URLClassLoader loader = classLoader(dir)) {
+                Class<?> entityClass = loader.loadClass("gen.GeneratedEntity");
+
+                assertNotNull(GeneratedSql.load(entityClass, "generated_entity"));
+                assertNull(GeneratedSql.load(entityClass, "renamed_entity"));
+            }
+        }
+
+        @Test
+        @DisplayName("@Id欠落やprivateなネストクラスは警告せずに生成を見送る_正常系")
+        void skipsSilently(@TempDir Path dir) throws Exception {
+            DiagnosticCollector<JavaFileObject> noId = compile(dir, "NoIdEntity", NO_ID_SOURCE);
+            DiagnosticCollector<JavaFileObject> nested = compile(dir, "Outer", NESTED_SOURCE);
+
+            assertTrue(noId.getDiagnostics().isEmpty(), noId.getDiagnostics()::toString);
+            assertTrue(nested.getDiagnostics().isEmpty(), nested.getDiagnostics()::toString);
+            assertFalse(Files.exists(dir.resolve("gen/NoIdEntity_Metadata.class")));
+            assertFalse(Files.exists(dir.resolve("gen/Outer_NestedEntity_Metadata.class")));
+        }
+    }
+
+    private static DiagnosticCollector<JavaFileObject> compile(Path dir, String name, String source) throws IOException {
+        Path file = dir.resolve("src/gen/" + name + ".java");
+        Files.createDirectories(file.getParent());
+        Files.write(file, source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics,
+                Arrays.asList("-d", dir.toString(), "-s", dir.toString(),
+                    "-classpath", System.getProperty("java.class.path")),
+                null, fileManager.getJavaFileObjects(file.toFile()));
+            task.setProcessors(Collections.singletonList(new EntityMetadataProcessor()));
+            assertTrue(task.call(), diagnostics.getDiagnostics()::toString);
+        }
+        return diagnostics;
+    }
+
+    private static URLClassLoader classLoader(Path dir) throws IOException {
+        return new URLClassLoader(new URL[] {dir.toUri().toURL()}, EntityMetadataProcessorTest.class.getClassLoader());
+    }
+}
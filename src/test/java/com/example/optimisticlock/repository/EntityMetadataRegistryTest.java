@@ -0,0 +1,163 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Id;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// EntityMetadataRegistryのキャッシュとメタデータ内容を検証するテスト。
+@DisplayName("EntityMetadataRegistryの振る舞い")
+class EntityMetadataRegistryTest {
+
+    @Nested
+    @DisplayName("get")
+    class Get {
+
+        @Test
+        @DisplayName("同一クラスは同一インスタンス_正常系")
+        void returnsCachedInstance() {
+            assertSame(EntityMetadataRegistry.get(SampleEntity.class), EntityMetadataRegistry.get(SampleEntity.class));
+        }
+
+        @Test
+        @DisplayName("並行初回アクセス_正常系")
+        void concurrentFirstAccess() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Callable<EntityMetadata>> tasks = new ArrayList<>();
+                for (int i = 0; i < 32; i++) {
+                    tasks.add(() -> EntityMetadataRegistry.get(ConcurrentEntity.class));
+                }
+                List<Future<EntityMetadata>> futures = executor.invokeAll(tasks);
+                EntityMetadata first = futures.get(0).get();
+                for (Future<EntityMetadata> future : futures) {
+                    assertSame(first, future.get());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("カラム構成_正常系")
+        void resolvesColumns() {
+            EntityMetadata metadata = EntityMetadataRegistry.get(SampleEntity.class);
+
+            assertEquals("sample_entity", metadata.getTableName());
+            assertEquals(Arrays.asList("SAMPLE_ID", "DISPLAY_NAME", "ZZCMN_CNAME", "ZZCMN_CDATE", "ZZCMN_FNAME", "ZZCMN_FDATE"),
+                metadata.getColumns().stream().map(EntityMetadata.Column::getColumn).collect(Collectors.toList()));
+            assertEquals(Arrays.asList("sampleId"),
+                metadata.getIdColumns().stream().map(EntityMetadata.Column::getProperty).collect(Collectors.toList()));
+            assertEquals(3, metadata.getAuditColumns().size());
+        }
+
+        @Test
+        @DisplayName("@TableName欠落は取得時に検出_異常系")
+        void missingTableNameDetectedLazily() {
+            EntityMetadata metadata = EntityMetadataRegistry.get(NoTableEntity.class);
+
+            assertFalse(metadata.hasTableName());
+            RepositoryConfigurationException ex = assertThrows(RepositoryConfigurationException.class,
+                metadata::getInsertSql);
+            assertTrue(ex.getMessage().contains(NoTableEntity.class.getName()));
+        }
+    }
+
+    @Nested
+    @DisplayName("Column.setValue")
+    class SetValue {
+
+        @Test
+        @DisplayName("セッターがあればセッター経由_正常系")
+        void usesSetter() {
+            SetterEntity entity = new SetterEntity();
+
+            EntityMetadataRegistry.get(SetterEntity.class).getColumn("name").setValue(entity, "first");
+
+            assertEquals("FIRST", entity.name);
+        }
+
+        @Test
+        @DisplayName("セッターがなければフィールドへ設定_正常系")
+        void fallsBackToField() {
+            SampleEntity entity = new SampleEntity();
+
+            EntityMetadataRegistry.get(SampleEntity.class).getColumn("displayName").setValue(entity, "first");
+
+            assertEquals("first", entity.displayName);
+        }
+    }
+
+    @Nested
+    @DisplayName("forRepository")
+    class ForRepository {
+
+        @Test
+        @DisplayName("マッパーのプロキシから解決_正常系")
+        void resolvesFromMapperProxy() {
+            SampleRepository repository = (SampleRepository) Proxy.newProxyInstance(
+                SampleRepository.class.getClassLoader(), new Class<?>[] {SampleRepository.class},
+                (proxy, method, args) -> null);
+
+            assertSame(EntityMetadataRegistry.get(SampleEntity.class), EntityMetadataRegistry.forRepository(repository));
+        }
+    }
+
+    @Nested
+    @DisplayName("camelToSnake")
+    class CamelToSnake {
+
+        @Test
+        @DisplayName("正常系")
+        void converts() {
+            assertEquals("ZZCMN_FDATE", EntityMetadata.camelToSnake("zzcmnFdate"));
+            assertEquals("ID", EntityMetadata.camelToSnake("id"));
+            assertNull(EntityMetadata.camelToSnake(null));
+        }
+    }
+
+    @TableName("sample_entity")
+    private static class SampleEntity extends BaseEntity {
+        @Id
+        private Long sampleId;
+        private String displayName;
+    }
+
+    private interface SampleRepository extends BaseRepository<SampleEntity> {}
+
+    @TableName("concurrent_entity")
+    private static class ConcurrentEntity extends BaseEntity {
+        @Id
+        private Long id;
+    }
+
+    @TableName("setter_entity")
+    private static class SetterEntity extends BaseEntity {
+        @Id
+        private Long id;
+        private String name;
+
+        void setName(String name) {
+            this.name = name.toUpperCase();
+        }
+    }
+
+    private static class NoTableEntity extends BaseEntity {
+        @Id
+        private Long id;
+    }
+}
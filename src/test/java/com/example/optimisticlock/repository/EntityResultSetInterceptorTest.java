@@ -0,0 +1,162 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Id;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// EntityResultSetInterceptorによる詰め替えが、MyBatisの自動マッピングと同じ結果になることを検証するテスト。
+@DisplayName("EntityResultSetInterceptorの振る舞い")
+class EntityResultSetInterceptorTest {
+
+    private static final LocalDateTime FDATE = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000);
+
+    private Connection keepAlive;
+    private JdbcDataSource keepAliveSource;
+    private MappedRepository autoMapped;
+    private MappedRepository compiled;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:result_set_interceptor;MODE=MySQL");
+        // 最後の接続が閉じるとインメモリDBが破棄されるため、テスト中は接続を保持する
+        keepAlive = dataSource.getConnection();
+        try (Statement statement = keepAlive.createStatement()) {
+            statement.execute("CREATE TABLE mapped_entity (ID BIGINT PRIMARY KEY, NAME VARCHAR(64), AMOUNT INT,"
+                + " ZZCMN_CNAME VARCHAR(64), ZZCMN_CDATE TIMESTAMP(3), ZZCMN_FNAME VARCHAR(64), ZZCMN_FDATE TIMESTAMP(3))");
+        }
+        keepAliveSource = dataSource;
+        autoMapped = repository(dataSource, false, false);
+        compiled = repository(dataSource, true, false);
+
+        List<MappedEntity> rows = new ArrayList<>();
+        rows.add(new MappedEntity(1L, "first", 10));
+        rows.add(new MappedEntity(2L, null, null));
+        rows.forEach(row -> row.setZzcmnFdate(FDATE));
+        autoMapped.insertAll(rows);
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        keepAlive.close();
+    }
+
+    @Nested
+    @DisplayName("handleResultSets")
+    class HandleResultSets {
+
+        @Test
+        @DisplayName("自動マッピングと同じ内容_正常系")
+        void mapsLikeAutoMapping() {
+            List<MappedEntity> expected = autoMapped.findAll();
+            List<MappedEntity> actual = compiled.findAll();
+
+            assertEquals(2, actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameValues(expected.get(i), actual.get(i));
+            }
+            assertEquals("first", actual.get(0).name);
+            assertEquals(Integer.valueOf(10), actual.get(0).amount);
+            assertEquals(FDATE, actual.get(0).getZzcmnFdate());
+            assertNull(actual.get(1).name);
+        }
+
+        @Test
+        @DisplayName("射影検索は取得した列のみ設定_正常系")
+        void mapsProjectedColumns() {
+            MappedEntity actual = compiled.findByIdProjected(new MappedEntity(1L, null, null),
+                Collections.singleton("name"));
+
+            assertEquals(Long.valueOf(1L), actual.id);
+            assertEquals("first", actual.name);
+            assertNull(actual.amount);
+            assertNull(actual.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("callSettersOnNullsは自動マッピングに任せる_正常系")
+        void fallsBackWhenCallingSettersOnNulls() {
+            MappedRepository callingSetters = repository(keepAliveSource, true, true);
+
+            MappedEntity actual = callingSetters.findById(new MappedEntity(2L, null, null));
+
+            assertNull(actual.name);
+            assertTrue(actual.nameSet);
+        }
+
+        @Test
+        @DisplayName("該当なしはnull_正常系")
+        void returnsNullWhenMissing() {
+            assertNull(compiled.findById(new MappedEntity(99L, null, null)));
+        }
+    }
+
+    private static MappedRepository repository(JdbcDataSource dataSource, boolean intercept, boolean callSettersOnNulls) {
+        Configuration configuration = new Configuration(
+            new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setCallSettersOnNulls(callSettersOnNulls);
+        if (intercept) {
+            configuration.addInterceptor(new EntityResultSetInterceptor());
+        }
+        configuration.addMapper(MappedRepository.class);
+        return SqlSessionManager.newInstance(new SqlSessionFactoryBuilder().build(configuration))
+            .getMapper(MappedRepository.class);
+    }
+
+    private static void assertSameValues(MappedEntity expected, MappedEntity actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.amount, actual.amount);
+        assertEquals(expected.getZzcmnCname(), actual.getZzcmnCname());
+        assertEquals(expected.getZzcmnCdate(), actual.getZzcmnCdate());
+        assertEquals(expected.getZzcmnFname(), actual.getZzcmnFname());
+        assertEquals(expected.getZzcmnFdate(), actual.getZzcmnFdate());
+    }
+
+    interface MappedRepository extends BaseRepository<MappedEntity> {}
+
+    @TableName("mapped_entity")
+    static class MappedEntity extends BaseEntity {
+        @Id
+        private Long id;
+        private String name;
+        private Integer amount;
+        private transient boolean nameSet;
+
+        MappedEntity() {
+        }
+
+        MappedEntity(Long id, String name, Integer amount) {
+            this.id = id;
+            this.name = name;
+            this.amount = amount;
+        }
+
+        void setName(String name) {
+            this.name = name;
+            this.nameSet = true;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Id;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// RepositoryBatchExecutorが、通常のマッパーと同じトランザクション・接続の中でバッチを送信できることを検証するテスト。
+@DisplayName("RepositoryBatchExecutorの振る舞い")
+class RepositoryBatchExecutorTest {
+
+    private static final LocalDateTime STAMP = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_000_000);
+
+    private Connection connection;
+    private PreparedStatement preparedStatement;
+    private BatchRepository repository;
+    private RepositoryBatchExecutor executor;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        preparedStatement = mock(PreparedStatement.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+        when(preparedStatement.getUpdateCount()).thenReturn(1);
+        when(preparedStatement.executeBatch()).thenReturn(new int[] {1, 0});
+
+        Configuration configuration = new Configuration(
+            new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+        configuration.addMapper(BatchRepository.class);
+        SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+        repository = new SqlSessionTemplate(sqlSessionFactory).getMapper(BatchRepository.class);
+        executor = new RepositoryBatchExecutor(sqlSessionFactory);
+        transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @Nested
+    @DisplayName("execute")
+    class Execute {
+
+        @Test
+        @DisplayName("通常のマッパーの後にバッチ_正常系")
+        void batchAfterSimpleStatement() throws SQLException {
+            int[] counts = transaction.execute(status -> {
+                repository.update(new BatchEntity(1L), STAMP);
+                return executor.execute(repository, entities(), (mapper, entity) -> mapper.update(entity, STAMP));
+            });
+
+            assertArrayEquals(new int[] {1, 0}, counts);
+            verify(preparedStatement, times(2)).addBatch();
+            verify(connection, times(1)).commit();
+        }
+
+        @Test
+        @DisplayName("バッチの後に通常のマッパー_正常系")
+        void simpleStatementAfterBatch() throws SQLException {
+            int count = transaction.execute(status -> {
+                executor.execute(repository, entities(), (mapper, entity) -> mapper.update(entity, STAMP));
+                return repository.update(new BatchEntity(1L), STAMP);
+            });
+
+            assertEquals(1, count);
+            verify(connection, times(1)).commit();
+        }
+
+        @Test
+        @DisplayName("トランザクション外は1件ずつ実行_正常系")
+        void fallsBackToSequentialWithoutTransaction() throws SQLException {
+            int[] counts = executor.execute(repository, entities(), (mapper, entity) -> mapper.update(entity, STAMP));
+
+            assertArrayEquals(new int[] {1, 1}, counts);
+            verify(preparedStatement, never()).addBatch();
+            verify(preparedStatement, times(2)).execute();
+        }
+    }
+
+    @Nested
+    @DisplayName("shared")
+    class Shared {
+
+        @Test
+        @DisplayName("登録した実行器を共通で使う_正常系")
+        void usesRegisteredExecutor() {
+            RepositoryBatchExecutor previous = RepositoryBatchExecutor.shared();
+            try {
+                assertSame(executor, RepositoryBatchExecutor.use(executor));
+                assertSame(executor, RepositoryBatchExecutor.shared());
+            } finally {
+                RepositoryBatchExecutor.use(previous);
+            }
+        }
+    }
+
+    private static List<BatchEntity> entities() {
+        return Arrays.asList(new BatchEntity(1L), new BatchEntity(2L));
+    }
+
+    interface BatchRepository extends BaseRepository<BatchEntity> {}
+
+    @TableName("batch_entity")
+    static class BatchEntity extends BaseEntity {
+        @Id
+        private Long id;
+
+        BatchEntity() {
+        }
+
+        BatchEntity(Long id) {
+            this.id = id;
+        }
+    }
+}
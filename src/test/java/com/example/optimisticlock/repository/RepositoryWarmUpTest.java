@@ -0,0 +1,113 @@
+package com.example.optimisticlock.repository;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import org.apache.ibatis.binding.MapperRegistry;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import javax.persistence.Id;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// RepositoryWarmUpによる起動時検証を確認するテスト。
+@DisplayName("RepositoryWarmUpの振る舞い")
+class RepositoryWarmUpTest {
+
+    @Nested
+    @DisplayName("warmUp")
+    class WarmUp {
+
+        @Test
+        @DisplayName("正常系")
+        void resolvesRepositoryEntities() {
+            RepositoryWarmUp warmUp = new RepositoryWarmUp(factoryWith(Arrays.asList(
+                WarmRepository.class,
+                UnrelatedMapper.class
+            )));
+
+            List<Class<?>> entityClasses = warmUp.warmUp();
+
+            assertEquals(Collections.singletonList(WarmEntity.class), entityClasses);
+        }
+
+        @Test
+        @DisplayName("各文のSQLを事前に組み立てる_正常系")
+        void buildsStatementSql() {
+            RecordingLanguageDriver driver = new RecordingLanguageDriver();
+            Configuration configuration = new Configuration();
+            configuration.getLanguageRegistry().register(driver);
+            configuration.setDefaultScriptingLanguage(RecordingLanguageDriver.class);
+            configuration.addMapper(WarmRepository.class);
+            SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(configuration);
+
+            new RepositoryWarmUp(factory).warmUp();
+
+            assertTrue(driver.scripts.stream().anyMatch(sql -> sql.startsWith("INSERT INTO warm_entity")));
+            assertTrue(driver.scripts.stream().anyMatch(sql -> sql.startsWith("UPDATE warm_entity")));
+            assertTrue(driver.scripts.stream().anyMatch(sql -> sql.contains("FROM warm_entity") && sql.contains("LIMIT")));
+        }
+
+        @Test
+        @DisplayName("@Id欠落_異常系")
+        void failsFastOnMisconfiguredEntity() {
+            RepositoryWarmUp warmUp = new RepositoryWarmUp(factoryWith(Collections.singletonList(
+                BrokenRepository.class
+            )));
+
+            RepositoryConfigurationException ex = assertThrows(RepositoryConfigurationException.class, warmUp::warmUp);
+            assertTrue(ex.getMessage().contains(BrokenEntity.class.getName()));
+        }
+    }
+
+    private SqlSessionFactory factoryWith(Collection<Class<?>> mappers) {
+        SqlSessionFactory factory = mock(SqlSessionFactory.class);
+        Configuration configuration = mock(Configuration.class);
+        MapperRegistry registry = mock(MapperRegistry.class);
+        when(factory.getConfiguration()).thenReturn(configuration);
+        when(configuration.getMapperRegistry()).thenReturn(registry);
+        when(registry.getMappers()).thenReturn(mappers);
+        when(configuration.getMappedStatementNames()).thenReturn(Collections.emptyList());
+        return factory;
+    }
+
+    @TableName("warm_entity")
+    private static class WarmEntity extends BaseEntity {
+        @Id
+        private Long id;
+    }
+
+    @TableName("broken_entity")
+    private static class BrokenEntity extends BaseEntity {
+        private Long id;
+    }
+
+    private interface WarmRepository extends BaseRepository<WarmEntity> {}
+
+    private interface BrokenRepository extends BaseRepository<BrokenEntity> {}
+
+    private interface UnrelatedMapper {}
+
+    // 解析を依頼されたSQL文字列を記録する言語ドライバー。
+    static class RecordingLanguageDriver extends XMLLanguageDriver {
+        private final List<String> scripts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
+            scripts.add(script);
+            return super.createSqlSource(configuration, script, parameterType);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import com.example.optimisticlock.repository.BaseRepository;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.transaction.SpringManagedTransactionFactory;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Id;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+// CheckUpdateStrategyの選択と各戦略の実行内容を検証するテスト。
+@DisplayName("CheckUpdateStrategyの振る舞い")
+class CheckUpdateStrategyTest {
+
+    private BaseRepository<DummyEntity> repository;
+
+    @BeforeEach
+    void setUp() {
+        @SuppressWarnings("unchecked")
+        BaseRepository<DummyEntity> mockRepository = mock(BaseRepository.class);
+        repository = mockRepository;
+    }
+
+    @Nested
+    @DisplayName("select")
+    class Select {
+
+        @Test
+        @DisplayName("件数による選択_正常系")
+        void selectsBySize() {
+            assertEquals(CheckUpdateStrategy.ROW_VALUE, CheckUpdateStrategy.select(3, 4, 10));
+            assertEquals(CheckUpdateStrategy.ROW_VALUE, CheckUpdateStrategy.select(4, 4, 10));
+            assertEquals(CheckUpdateStrategy.CHUNKED, CheckUpdateStrategy.select(5, 4, 10));
+            assertEquals(CheckUpdateStrategy.TEMP_TABLE, CheckUpdateStrategy.select(10, 4, 10));
+        }
+    }
+
+    @Nested
+    @DisplayName("ROW_VALUE")
+    class RowValue {
+
+        @Test
+        @DisplayName("2のべき乗への埋め合わせ_正常系")
+        void padsToPowerOfTwo() {
+            when(repository.checkUpdateList(anyList())).thenReturn(3);
+
+            int matched = CheckUpdateStrategy.ROW_VALUE.countMatches(repository, entities(3), 8);
+
+            assertEquals(3, matched);
+            verify(repository).checkUpdateList(argThat(list -> list.size() == 4));
+        }
+    }
+
+    @Nested
+    @DisplayName("CHUNKED")
+    class Chunked {
+
+        @Test
+        @DisplayName("固定長チャンク_正常系")
+        void usesFixedChunkSize() {
+            when(repository.checkUpdateList(anyList())).thenReturn(2, 1);
+
+            int matched = CheckUpdateStrategy.CHUNKED.countMatches(repository, entities(3), 2);
+
+            assertEquals(3, matched);
+            verify(repository, times(2)).checkUpdateList(argThat(list -> list.size() == 2));
+        }
+    }
+
+    @Nested
+    @DisplayName("TEMP_TABLE")
+    class TempTable {
+
+        @BeforeEach
+        void beginSynchronization() {
+            TransactionSynchronizationManager.initSynchronization();
+        }
+
+        @AfterEach
+        void endSynchronization() {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        @Test
+        @DisplayName("正常系")
+        void joinsTemporaryTable() {
+            when(repository.countLockCheckMatches()).thenReturn(5);
+
+            int matched = CheckUpdateStrategy.TEMP_TABLE.countMatches(repository, entities(5), 2);
+
+            assertEquals(5, matched);
+            verify(repository).createLockCheckTable();
+            verify(repository, times(3)).insertLockCheckRows(argThat(list -> list.size() == 2));
+            verify(repository).dropLockCheckTable();
+        }
+
+        @Test
+        @DisplayName("失敗時も一時テーブルを削除_異常系")
+        void dropsTableOnFailure() {
+            when(repository.countLockCheckMatches()).thenThrow(new IllegalStateException("boom"));
+
+            assertThrows(IllegalStateException.class,
+                () -> CheckUpdateStrategy.TEMP_TABLE.countMatches(repository, entities(1), 2));
+            verify(repository).dropLockCheckTable();
+        }
+    }
+
+    @Nested
+    @DisplayName("TEMP_TABLEの接続")
+    class TempTableConnection {
+
+        private DataSource dataSource;
+        private Connection connection;
+        private LockCheckRepository mapper;
+        private TransactionTemplate transaction;
+
+        @BeforeEach
+        void setUp() throws SQLException {
+            dataSource = mock(DataSource.class);
+            connection = mock(Connection.class);
+            PreparedStatement preparedStatement = mock(PreparedStatement.class);
+            ResultSet resultSet = mock(ResultSet.class);
+            ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+            when(dataSource.getConnection()).thenReturn(connection);
+            when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+            when(resultSet.getMetaData()).thenReturn(metaData);
+            when(resultSet.next()).thenReturn(true, false);
+            when(resultSet.getInt(anyString())).thenReturn(2);
+            when(metaData.getColumnCount()).thenReturn(1);
+            when(metaData.getColumnLabel(1)).thenReturn("COUNT(1)");
+            when(metaData.getColumnClassName(1)).thenReturn(Long.class.getName());
+            when(metaData.getColumnType(1)).thenReturn(Types.BIGINT);
+            // 問い合わせだけは結果セットを返す
+            when(connection.prepareStatement(startsWith("SELECT"))).thenAnswer(invocation -> {
+                PreparedStatement query = mock(PreparedStatement.class);
+                when(query.execute()).thenReturn(true);
+                when(query.getResultSet()).thenReturn(resultSet);
+                when(query.getConnection()).thenReturn(connection);
+                return query;
+            });
+
+            Configuration configuration = new Configuration(
+                new Environment("test", new SpringManagedTransactionFactory(), dataSource));
+            configuration.addMapper(LockCheckRepository.class);
+            SqlSessionFactory sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+
+            mapper = new SqlSessionTemplate(sqlSessionFactory).getMapper(LockCheckRepository.class);
+            transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        }
+
+        @Test
+        @DisplayName("トランザクション内は同一接続_正常系")
+        void usesSingleConnection() throws SQLException {
+            int matched = transaction.execute(status ->
+                CheckUpdateStrategy.TEMP_TABLE.countMatches(mapper, lockCheckEntities(3), 2));
+
+            assertEquals(2, matched);
+            verify(dataSource, times(1)).getConnection();
+            verify(connection).prepareStatement(startsWith("CREATE TEMPORARY TABLE"));
+            verify(connection, times(2)).prepareStatement(startsWith("INSERT INTO tmp_lock_check_lock_check_entity"));
+            verify(connection).prepareStatement(startsWith("DROP TEMPORARY TABLE"));
+        }
+
+        @Test
+        @DisplayName("トランザクション外_異常系")
+        void requiresTransaction() throws SQLException {
+            assertThrows(IllegalStateException.class,
+                () -> CheckUpdateStrategy.TEMP_TABLE.countMatches(mapper, lockCheckEntities(3), 2));
+            verify(dataSource, never()).getConnection();
+        }
+    }
+
+    private List<DummyEntity> entities(int size) {
+        List<DummyEntity> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(new DummyEntity());
+        }
+        return list;
+    }
+
+    private static List<LockCheckEntity> lockCheckEntities(int size) {
+        List<LockCheckEntity> list = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            list.add(new LockCheckEntity((long) i, LocalDateTime.of(2024, 1, 1, 12, 0)));
+        }
+        return list;
+    }
+
+    private static class DummyEntity extends BaseEntity {}
+
+    interface LockCheckRepository extends BaseRepository<LockCheckEntity> {}
+
+    @TableName("lock_check_entity")
+    static class LockCheckEntity extends BaseEntity {
+        @Id
+        private Long id;
+
+        LockCheckEntity() {
+        }
+
+        LockCheckEntity(Long id, LocalDateTime zzcmnFdate) {
+            this.id = id;
+            setZzcmnFdate(zzcmnFdate);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.exception.OptimisticLockException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ConflictRetryPolicyの再試行と待機時間を検証するテスト。
+@DisplayName("ConflictRetryPolicyの振る舞い")
+class ConflictRetryPolicyTest {
+
+    @Nested
+    @DisplayName("execute")
+    class Execute {
+
+        @Test
+        @DisplayName("マージ後の再更新で回復_正常系")
+        void recoversWithMergedEntity() {
+            ConflictRetryPolicy policy = new ConflictRetryPolicy(3, 0, 0);
+            List<String> attempts = new ArrayList<>();
+
+            String result = policy.execute("change", candidate -> {
+                attempts.add(candidate);
+                if (attempts.size() == 1) {
+                    throw new OptimisticLockException("conflict");
+                }
+            }, entity -> "latest", (latest, attempted) -> latest + "+" + attempted);
+
+            assertEquals("latest+change", result);
+            assertEquals(2, attempts.size());
+            assertEquals(1L, policy.stats().get("recoveredCount"));
+            assertEquals(1L, policy.stats().get("retryCount"));
+        }
+
+        @Test
+        @DisplayName("最大試行回数で断念_異常系")
+        void givesUpAfterMaxAttempts() {
+            ConflictRetryPolicy policy = new ConflictRetryPolicy(2, 0, 0);
+
+            assertThrows(OptimisticLockException.class, () -> policy.execute("change", candidate -> {
+                throw new OptimisticLockException("conflict");
+            }, entity -> "latest", (latest, attempted) -> latest));
+
+            assertEquals(2L, policy.stats().get("conflictCount"));
+            assertEquals(1L, policy.stats().get("exhaustedCount"));
+        }
+
+        @Test
+        @DisplayName("削除済みの行は再試行しない_異常系")
+        void stopsWhenRowDeleted() {
+            ConflictRetryPolicy policy = new ConflictRetryPolicy(5, 0, 0);
+
+            assertThrows(OptimisticLockException.class, () -> policy.execute("change", candidate -> {
+                throw new OptimisticLockException("conflict");
+            }, entity -> null, (latest, attempted) -> latest));
+
+            assertEquals(1L, policy.stats().get("conflictCount"));
+            assertEquals(0L, policy.stats().get("retryCount"));
+        }
+    }
+
+    @Nested
+    @DisplayName("backoffMillis")
+    class BackoffMillis {
+
+        @Test
+        @DisplayName("上限以内のジッター_正常系")
+        void staysWithinCeiling() {
+            ConflictRetryPolicy policy = new ConflictRetryPolicy(10, 10, 50);
+
+            for (int i = 0; i < 100; i++) {
+                assertTrue(policy.backoffMillis(1) <= 10);
+                assertTrue(policy.backoffMillis(2) <= 20);
+                assertTrue(policy.backoffMillis(8) <= 50);
+            }
+        }
+    }
+}
@@ -1,15 +1,29 @@
 package com.example.optimisticlock.service;
 
+import com.example.optimisticlock.annotation.EntityCache;
+import com.example.optimisticlock.annotation.RetryOnConflict;
+import com.example.optimisticlock.annotation.TableName;
 import com.example.optimisticlock.entity.BaseEntity;
 import com.example.optimisticlock.exception.OptimisticLockException;
 import com.example.optimisticlock.repository.BaseRepository;
+import com.example.optimisticlock.repository.EntityMetadata;
+import com.example.optimisticlock.repository.EntityMetadataRegistry;
+import jakarta.validation.ValidationException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.Id;
+import javax.persistence.Version;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -46,6 +60,80 @@ class CrudServiceDefaultTest {
             service.insert(entity);
             verify(repository).insert(entity);
         }
+
+        @Test
+        @DisplayName("登録したエンティティでそのまま更新_正常系")
+        void updatesAfterCreate() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<VersionedEntity> versionedRepository = mock(BaseRepository.class);
+            CrudService<VersionedEntity, BaseRepository<VersionedEntity>> versionedService = () -> versionedRepository;
+            EntityMetadata metadata = EntityMetadataRegistry.get(VersionedEntity.class);
+            VersionedEntity created = new VersionedEntity(1L, null);
+            AtomicReference<Object> boundVersion = new AtomicReference<>();
+            when(versionedRepository.update(same(created), any())).thenAnswer(invocation -> {
+                boundVersion.set(metadata.getLockValue(created));
+                return 1;
+            });
+
+            versionedService.insert(created);
+            assertEquals(0L, metadata.getLockValue(created));
+
+            versionedService.update(created);
+            assertEquals(0L, boundVersion.get());
+            assertEquals(1L, metadata.getLockValue(created));
+        }
+    }
+
+    @Nested
+    @DisplayName("insertAll")
+    class InsertAll {
+
+        @Test
+        @DisplayName("行ごとの件数_正常系")
+        void returnsPerRowCounts() {
+            CrudService<DummyEntity, BaseRepository<DummyEntity>> chunkedService = new CrudService<DummyEntity, BaseRepository<DummyEntity>>() {
+                @Override
+                public BaseRepository<DummyEntity> getRepository() {
+                    return repository;
+                }
+
+                @Override
+                public int getBatchChunkSize() {
+                    return 2;
+                }
+            };
+            List<DummyEntity> list = Arrays.asList(new DummyEntity(), new DummyEntity(), new DummyEntity());
+            when(repository.insert(any())).thenReturn(1, 0, 1);
+
+            int[] counts = chunkedService.insertAll(list);
+
+            assertArrayEquals(new int[] {1, 0, 1}, counts);
+            verify(repository, times(3)).insert(any());
+            verify(repository, never()).insertAll(anyList());
+        }
+
+        @Test
+        @DisplayName("バージョンの初期値を反映_正常系")
+        void initializesVersions() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<VersionedEntity> versionedRepository = mock(BaseRepository.class);
+            CrudService<VersionedEntity, BaseRepository<VersionedEntity>> versionedService = () -> versionedRepository;
+            List<VersionedEntity> list = Arrays.asList(new VersionedEntity(1L, null), new VersionedEntity(2L, 5L));
+            when(versionedRepository.insert(any())).thenReturn(1);
+
+            versionedService.insertAll(list);
+
+            EntityMetadata metadata = EntityMetadataRegistry.get(VersionedEntity.class);
+            assertEquals(0L, metadata.getLockValue(list.get(0)));
+            assertEquals(5L, metadata.getLockValue(list.get(1)));
+        }
+
+        @Test
+        @DisplayName("空リスト_正常系")
+        void emptyList() {
+            assertEquals(0, service.insertAll(Collections.emptyList()).length);
+            verify(repository, never()).insertAll(anyList());
+        }
     }
 
     @Nested
@@ -55,17 +143,266 @@ class CrudServiceDefaultTest {
         @Test
         @DisplayName("正常系")
         void normal() {
-            when(repository.update(entity)).thenReturn(1);
+            when(repository.update(same(entity), any())).thenReturn(1);
             assertDoesNotThrow(() -> service.update(entity));
-            verify(repository).update(entity);
+            verify(repository).update(same(entity), any());
+        }
+
+        @Test
+        @DisplayName("新しい最終更新日時の反映_正常系")
+        void writesBackNewTimestamp() {
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            AtomicReference<LocalDateTime> bound = new AtomicReference<>();
+            when(repository.update(same(entity), any())).thenAnswer(invocation -> {
+                assertEquals(before, entity.getZzcmnFdate());
+                bound.set(invocation.getArgument(1));
+                return 1;
+            });
+
+            service.update(entity);
+
+            assertTrue(bound.get().isAfter(before));
+            assertEquals(bound.get(), entity.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("バージョンの反映_正常系")
+        void writesBackVersion() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<VersionedEntity> versionedRepository = mock(BaseRepository.class);
+            CrudService<VersionedEntity, BaseRepository<VersionedEntity>> versionedService = () -> versionedRepository;
+            VersionedEntity versioned = new VersionedEntity(1L, 3L);
+            when(versionedRepository.update(same(versioned), any())).thenReturn(1);
+
+            versionedService.update(versioned);
+
+            assertEquals(4L, EntityMetadataRegistry.get(VersionedEntity.class).getLockValue(versioned));
+        }
+
+        @Test
+        @DisplayName("競合時の再読込み・マージ・再更新_正常系")
+        void retriesWithMerge() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<RetriedEntity> retriedRepository = mock(BaseRepository.class);
+            CrudService<RetriedEntity, BaseRepository<RetriedEntity>> retriedService =
+                new CrudService<RetriedEntity, BaseRepository<RetriedEntity>>() {
+                    @Override
+                    public BaseRepository<RetriedEntity> getRepository() {
+                        return retriedRepository;
+                    }
+
+                    @Override
+                    public ConflictMerger<RetriedEntity> getConflictMerger() {
+                        return (latest, attempted) -> {
+                            latest.setZzcmnFname(attempted.getZzcmnFname());
+                            return latest;
+                        };
+                    }
+                };
+            RetriedEntity attempted = new RetriedEntity(1L);
+            attempted.setZzcmnFname("mine");
+            RetriedEntity latest = new RetriedEntity(1L);
+            latest.setZzcmnFname("theirs");
+            when(retriedRepository.update(same(attempted), any())).thenReturn(0);
+            when(retriedRepository.findById(same(attempted))).thenReturn(latest);
+            when(retriedRepository.update(same(latest), any())).thenReturn(1);
+
+            RetriedEntity updated = retriedService.update(attempted);
+
+            assertSame(latest, updated);
+            assertEquals("mine", updated.getZzcmnFname());
+            assertNotNull(updated.getZzcmnFdate());
         }
 
         @Test
         @DisplayName("更新件数不一致_異常系")
         void noRowsAffected() {
-            when(repository.update(entity)).thenReturn(0);
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            when(repository.update(same(entity), any())).thenReturn(0);
             assertThrows(OptimisticLockException.class, () -> service.update(entity));
-            verify(repository).update(entity);
+            verify(repository).update(same(entity), any());
+            assertEquals(before, entity.getZzcmnFdate());
+        }
+    }
+
+    @Nested
+    @DisplayName("patch")
+    class Patch {
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            Set<String> fields = Collections.singleton("zzcmnFname");
+            when(repository.patch(same(entity), eq(fields), any())).thenReturn(1);
+
+            assertSame(entity, service.patch(entity, fields));
+            assertTrue(entity.getZzcmnFdate().isAfter(before));
+        }
+
+        @Test
+        @DisplayName("更新件数不一致_異常系")
+        void noRowsAffected() {
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            Set<String> fields = Collections.singleton("zzcmnFname");
+            when(repository.patch(same(entity), eq(fields), any())).thenReturn(0);
+
+            assertThrows(OptimisticLockException.class, () -> service.patch(entity, fields));
+            assertEquals(before, entity.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("更新できないフィールド_異常系")
+        void nonUpdatableField() {
+            assertThrows(ValidationException.class,
+                () -> service.patch(entity, Collections.singleton("zzcmnCdate")));
+            assertThrows(ValidationException.class, () -> service.patch(entity, Collections.emptySet()));
+            verify(repository, never()).patch(any(), any(), any());
+        }
+    }
+
+    @Nested
+    @DisplayName("updateAll")
+    class UpdateAll {
+
+        private BaseRepository<KeyedEntity> keyedRepository;
+        private CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> mockRepository = mock(BaseRepository.class);
+            keyedRepository = mockRepository;
+            keyedService = () -> keyedRepository;
+        }
+
+        // BaseEntityの@Dataにより監査項目が同じエンティティはequalsで一致するため、同一性で照合する
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            KeyedEntity first = new KeyedEntity(1L);
+            KeyedEntity second = new KeyedEntity(2L);
+            when(keyedRepository.update(same(first), any())).thenReturn(1);
+            when(keyedRepository.update(same(second), any())).thenReturn(1);
+
+            assertDoesNotThrow(() -> keyedService.updateAll(Arrays.asList(first, second)));
+            verify(keyedRepository).update(same(first), any());
+            verify(keyedRepository).update(same(second), any());
+        }
+
+        @Test
+        @DisplayName("競合キーの報告_異常系")
+        void reportsConflictingKeys() {
+            KeyedEntity first = new KeyedEntity(1L);
+            KeyedEntity second = new KeyedEntity(2L);
+            when(keyedRepository.update(same(first), any())).thenReturn(1);
+            when(keyedRepository.update(same(second), any())).thenReturn(0);
+
+            OptimisticLockException ex = assertThrows(OptimisticLockException.class,
+                () -> keyedService.updateAll(Arrays.asList(first, second)));
+
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 2L)), ex.getConflictKeys());
+        }
+    }
+
+    @Nested
+    @DisplayName("upsert")
+    class Upsert {
+
+        @Test
+        @DisplayName("新規登録_正常系")
+        void inserted() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<VersionedEntity> versionedRepository = mock(BaseRepository.class);
+            CrudService<VersionedEntity, BaseRepository<VersionedEntity>> versionedService = () -> versionedRepository;
+            VersionedEntity versioned = new VersionedEntity(1L, null);
+            AtomicReference<LocalDateTime> bound = new AtomicReference<>();
+            when(versionedRepository.upsert(same(versioned), any())).thenAnswer(invocation -> {
+                bound.set(invocation.getArgument(1));
+                return 1;
+            });
+            when(versionedRepository.findStamps(anyList())).thenAnswer(invocation -> {
+                VersionedEntity row = new VersionedEntity(1L, 0L);
+                row.setZzcmnFdate(bound.get());
+                return Collections.singletonList(row);
+            });
+
+            assertEquals(UpsertResult.INSERTED, versionedService.upsert(versioned));
+            assertEquals(bound.get(), versioned.getZzcmnFdate());
+            assertEquals(0L, EntityMetadataRegistry.get(VersionedEntity.class).getLockValue(versioned));
+        }
+
+        @Test
+        @DisplayName("既存行の更新_正常系")
+        void updated() {
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            when(repository.upsert(same(entity), any())).thenReturn(2);
+
+            assertEquals(UpsertResult.UPDATED, service.upsert(entity));
+            assertTrue(entity.getZzcmnFdate().isAfter(before));
+            verify(repository, never()).findStamps(anyList());
+        }
+
+        // 既定の接続設定(found rows)では、値を変えない代入も影響件数1となる
+        @Test
+        @DisplayName("競合_異常系")
+        void conflicted() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> keyedRepository = mock(BaseRepository.class);
+            CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService = () -> keyedRepository;
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            LocalDateTime current = LocalDateTime.of(2024, 1, 2, 0, 0);
+            KeyedEntity keyed = new KeyedEntity(1L, before);
+            when(keyedRepository.upsert(same(keyed), any())).thenReturn(1);
+            when(keyedRepository.findStamps(anyList()))
+                .thenReturn(Collections.singletonList(new KeyedEntity(1L, current)));
+
+            assertEquals(UpsertResult.CONFLICTED, keyedService.upsert(keyed));
+            assertEquals(before, keyed.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("影響件数0は競合_異常系")
+        void conflictedWithAffectedRows() {
+            LocalDateTime before = LocalDateTime.of(2024, 1, 1, 0, 0);
+            entity.setZzcmnFdate(before);
+            when(repository.upsert(same(entity), any())).thenReturn(0);
+
+            assertEquals(UpsertResult.CONFLICTED, service.upsert(entity));
+            assertEquals(before, entity.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("行ごとの結果_正常系")
+        void reportsEachRow() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> keyedRepository = mock(BaseRepository.class);
+            CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService = () -> keyedRepository;
+            KeyedEntity inserted = new KeyedEntity(1L);
+            KeyedEntity updated = new KeyedEntity(2L);
+            KeyedEntity conflicted = new KeyedEntity(3L);
+            AtomicReference<LocalDateTime> insertedStamp = new AtomicReference<>();
+            when(keyedRepository.upsert(same(inserted), any())).thenAnswer(invocation -> {
+                insertedStamp.set(invocation.getArgument(1));
+                return 1;
+            });
+            when(keyedRepository.upsert(same(updated), any())).thenReturn(2);
+            when(keyedRepository.upsert(same(conflicted), any())).thenReturn(1);
+            when(keyedRepository.findStamps(anyList())).thenAnswer(invocation -> Arrays.asList(
+                new KeyedEntity(1L, insertedStamp.get()),
+                new KeyedEntity(3L, LocalDateTime.of(2024, 1, 2, 0, 0))));
+
+            List<UpsertResult> results = keyedService.upsertAll(Arrays.asList(inserted, updated, conflicted));
+
+            assertEquals(Arrays.asList(UpsertResult.INSERTED, UpsertResult.UPDATED, UpsertResult.CONFLICTED), results);
+            assertEquals(insertedStamp.get(), inserted.getZzcmnFdate());
+            assertNull(conflicted.getZzcmnFdate());
+            verify(keyedRepository, never()).findByIds(anyList());
         }
     }
 
@@ -90,6 +427,80 @@ class CrudServiceDefaultTest {
         }
     }
 
+    @Nested
+    @DisplayName("deleteAll")
+    class DeleteAll {
+
+        private BaseRepository<KeyedEntity> keyedRepository;
+        private CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> mockRepository = mock(BaseRepository.class);
+            keyedRepository = mockRepository;
+            keyedService = () -> keyedRepository;
+        }
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            LocalDateTime fdate = LocalDateTime.of(2024, 1, 1, 0, 0);
+            when(keyedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate)));
+            when(keyedRepository.deleteAll(anyList())).thenReturn(2);
+
+            DeleteAllResult result = keyedService.deleteAll(
+                Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate)));
+
+            assertEquals(2, result.getDeletedCount());
+            assertTrue(result.getStaleKeys().isEmpty());
+            assertTrue(result.getMissingKeys().isEmpty());
+            verify(keyedRepository, times(1)).findLockValues(anyList());
+        }
+
+        @Test
+        @DisplayName("更新済み・該当なしキーの報告_異常系")
+        void reportsStaleAndMissingKeys() {
+            LocalDateTime fdate = LocalDateTime.of(2024, 1, 1, 0, 0);
+            KeyedEntity current = new KeyedEntity(1L, fdate);
+            when(keyedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate.plusSeconds(1))));
+            when(keyedRepository.deleteAll(anyList())).thenReturn(1);
+
+            DeleteAllResult result = keyedService.deleteAll(
+                Arrays.asList(current, new KeyedEntity(2L, fdate), new KeyedEntity(3L, fdate)));
+
+            assertEquals(1, result.getDeletedCount());
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 2L)), result.getStaleKeys());
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 3L)), result.getMissingKeys());
+            verify(keyedRepository).deleteAll(argThat(list -> list.size() == 1 && list.get(0) == current));
+        }
+
+        @Test
+        @DisplayName("読込み後に更新された行の報告_異常系")
+        void reportsRowsUpdatedAfterRead() {
+            LocalDateTime fdate = LocalDateTime.of(2024, 1, 1, 0, 0);
+            when(keyedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate)))
+                .thenReturn(Collections.singletonList(new KeyedEntity(2L, fdate.plusSeconds(1))));
+            when(keyedRepository.deleteAll(anyList())).thenReturn(1);
+
+            DeleteAllResult result = keyedService.deleteAll(
+                Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate)));
+
+            assertEquals(1, result.getDeletedCount());
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 2L)), result.getStaleKeys());
+        }
+
+        @Test
+        @DisplayName("空リスト_正常系")
+        void emptyList() {
+            assertEquals(0, keyedService.deleteAll(Collections.emptyList()).getDeletedCount());
+            verify(keyedRepository, never()).deleteAll(anyList());
+        }
+    }
+
     @Nested
     @DisplayName("findById")
     class FindById {
@@ -117,6 +528,224 @@ class CrudServiceDefaultTest {
         }
     }
 
+    @Nested
+    @DisplayName("キャッシュ経由のfindById")
+    class CachedFindById {
+
+        private BaseRepository<CachedEntity> cachedRepository;
+        private CrudService<CachedEntity, BaseRepository<CachedEntity>> cachedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<CachedEntity> mockRepository = mock(BaseRepository.class);
+            cachedRepository = mockRepository;
+            cachedService = () -> cachedRepository;
+        }
+
+        @Test
+        @DisplayName("2回目はキャッシュから返却_正常系")
+        void servesSecondReadFromCache() {
+            CachedEntity row = new CachedEntity(1L);
+            when(cachedRepository.findById(any())).thenReturn(row);
+
+            assertEquals(Long.valueOf(1L), cachedService.findById(new CachedEntity(1L)).id);
+            assertEquals(Long.valueOf(1L), cachedService.findById(new CachedEntity(1L)).id);
+
+            verify(cachedRepository, times(1)).findById(any());
+        }
+
+        @Test
+        @DisplayName("返却したエンティティの変更はキャッシュへ反映しない_正常系")
+        void returnsCopies() {
+            CachedEntity row = new CachedEntity(3L);
+            row.setZzcmnFdate(LocalDateTime.of(2024, 1, 1, 0, 0));
+            when(cachedRepository.findById(any())).thenReturn(row);
+
+            CachedEntity first = cachedService.findById(new CachedEntity(3L));
+            first.setZzcmnFdate(LocalDateTime.of(2025, 1, 1, 0, 0));
+
+            CachedEntity second = cachedService.findById(new CachedEntity(3L));
+            assertNotSame(first, second);
+            assertNotSame(row, second);
+            assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0), second.getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("トランザクション内はキャッシュを使わない_正常系")
+        void bypassesCacheInTransaction() {
+            when(cachedRepository.findById(any())).thenReturn(new CachedEntity(5L));
+            TransactionSynchronizationManager.setActualTransactionActive(true);
+            try {
+                cachedService.findById(new CachedEntity(5L));
+            } finally {
+                TransactionSynchronizationManager.setActualTransactionActive(false);
+            }
+            cachedService.findById(new CachedEntity(5L));
+
+            verify(cachedRepository, times(2)).findById(any());
+        }
+
+        @Test
+        @DisplayName("更新で無効化_正常系")
+        void updateInvalidates() {
+            when(cachedRepository.findById(any())).thenReturn(new CachedEntity(2L));
+            when(cachedRepository.update(any(), any())).thenReturn(1);
+
+            cachedService.findById(new CachedEntity(2L));
+            cachedService.update(new CachedEntity(2L));
+            cachedService.findById(new CachedEntity(2L));
+
+            verify(cachedRepository, times(2)).findById(any());
+        }
+    }
+
+    @Nested
+    @DisplayName("findByIds")
+    class FindByIds {
+
+        private BaseRepository<KeyedEntity> keyedRepository;
+        private CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> mockRepository = mock(BaseRepository.class);
+            keyedRepository = mockRepository;
+            keyedService = new CrudService<KeyedEntity, BaseRepository<KeyedEntity>>() {
+                @Override
+                public BaseRepository<KeyedEntity> getRepository() {
+                    return keyedRepository;
+                }
+
+                @Override
+                public int getBatchChunkSize() {
+                    return 2;
+                }
+            };
+        }
+
+        @Test
+        @DisplayName("要求順の並べ替えと該当なしの報告_正常系")
+        void returnsInRequestOrder() {
+            KeyedEntity row1 = new KeyedEntity(1L);
+            KeyedEntity row3 = new KeyedEntity(3L);
+            when(keyedRepository.findByIds(anyList()))
+                .thenReturn(Collections.singletonList(row3))
+                .thenReturn(Collections.singletonList(row1));
+
+            MultiGetResult<KeyedEntity> result = keyedService.findByIds(Arrays.asList(
+                new KeyedEntity(3L), new KeyedEntity(2L), new KeyedEntity(1L)));
+
+            assertSame(row3, result.getItems().get(0));
+            assertNull(result.getItems().get(1));
+            assertSame(row1, result.getItems().get(2));
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 2L)), result.getMissingKeys());
+            verify(keyedRepository, times(2)).findByIds(anyList());
+        }
+
+        @Test
+        @DisplayName("空リスト_正常系")
+        void emptyList() {
+            assertTrue(keyedService.findByIds(Collections.emptyList()).getItems().isEmpty());
+            verify(keyedRepository, never()).findByIds(anyList());
+        }
+    }
+
+    @Nested
+    @DisplayName("射影取得")
+    class Projection {
+
+        private KeyedRepository keyedRepository;
+        private CrudService<KeyedEntity, KeyedRepository> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            keyedRepository = mock(KeyedRepository.class);
+            keyedService = () -> keyedRepository;
+        }
+
+        @Test
+        @DisplayName("findById_正常系")
+        void findById() {
+            KeyedEntity condition = new KeyedEntity(1L);
+            KeyedEntity found = new KeyedEntity(1L);
+            List<String> fields = Collections.singletonList("zzcmnFname");
+            when(keyedRepository.findByIdProjected(same(condition), eq(fields))).thenReturn(found);
+
+            assertSame(found, keyedService.findById(condition, fields));
+        }
+
+        @Test
+        @DisplayName("findAll_正常系")
+        void findAll() {
+            List<KeyedEntity> rows = Collections.singletonList(new KeyedEntity(1L));
+            List<String> fields = Collections.singletonList("zzcmnFname");
+            when(keyedRepository.findAllProjected(fields)).thenReturn(rows);
+
+            assertEquals(rows, keyedService.findAll(fields));
+        }
+
+        @Test
+        @DisplayName("存在しないフィールド_異常系")
+        void rejectsUnknownField() {
+            List<String> fields = Arrays.asList("zzcmnFname", "password");
+
+            ValidationException ex = assertThrows(ValidationException.class, () -> keyedService.findAll(fields));
+            assertTrue(ex.getMessage().contains("password"));
+            assertThrows(ValidationException.class,
+                () -> keyedService.findById(new KeyedEntity(1L), Collections.emptyList()));
+            verifyNoInteractions(keyedRepository);
+        }
+    }
+
+    @Nested
+    @DisplayName("findPage")
+    class FindPage {
+
+        private BaseRepository<KeyedEntity> keyedRepository;
+        private CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> mockRepository = mock(BaseRepository.class);
+            keyedRepository = mockRepository;
+            keyedService = () -> keyedRepository;
+        }
+
+        @Test
+        @DisplayName("カーソルの受け渡し_正常系")
+        void cursorRoundTrip() {
+            when(keyedRepository.findPage(isNull(), eq(2)))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L), new KeyedEntity(2L)));
+            when(keyedRepository.findPage(eq(Collections.singletonMap("id", 2)), eq(2)))
+                .thenReturn(Collections.singletonList(new KeyedEntity(3L)));
+
+            KeysetPage<KeyedEntity> first = keyedService.findPage(null, 2);
+            KeysetPage<KeyedEntity> second = keyedService.findPage(first.getNextCursor(), 2);
+
+            assertEquals(2, first.getItems().size());
+            assertNotNull(first.getNextCursor());
+            assertEquals(1, second.getItems().size());
+            assertNull(second.getNextCursor());
+        }
+
+        @Test
+        @DisplayName("ページサイズ範囲外_異常系")
+        void rejectsInvalidSize() {
+            assertThrows(ValidationException.class, () -> keyedService.findPage(null, 0));
+            assertThrows(ValidationException.class, () -> keyedService.findPage(null, 1001));
+            verify(keyedRepository, never()).findPage(any(), anyInt());
+        }
+
+        @Test
+        @DisplayName("不正なカーソル_異常系")
+        void rejectsMalformedCursor() {
+            assertThrows(ValidationException.class, () -> keyedService.findPage("not a cursor", 10));
+        }
+    }
+
     @Nested
     @DisplayName("checkUpdateList")
     class CheckUpdateList {
@@ -154,5 +783,126 @@ class CrudServiceDefaultTest {
         }
     }
 
+    @Nested
+    @DisplayName("checkUpdateListWithKeys")
+    class CheckUpdateListWithKeys {
+
+        private BaseRepository<KeyedEntity> keyedRepository;
+        private CrudService<KeyedEntity, BaseRepository<KeyedEntity>> keyedService;
+
+        @BeforeEach
+        void setUp() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<KeyedEntity> mockRepository = mock(BaseRepository.class);
+            keyedRepository = mockRepository;
+            keyedService = () -> keyedRepository;
+        }
+
+        @Test
+        @DisplayName("正常系")
+        void normal() {
+            LocalDateTime fdate = LocalDateTime.of(2024, 1, 1, 0, 0);
+            List<KeyedEntity> list = Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate));
+            when(keyedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate)));
+
+            assertDoesNotThrow(() -> keyedService.checkUpdateListWithKeys(list));
+        }
+
+        @Test
+        @DisplayName("更新済み・削除済みキーの報告_異常系")
+        void reportsStaleAndMissingKeys() {
+            LocalDateTime fdate = LocalDateTime.of(2024, 1, 1, 0, 0);
+            List<KeyedEntity> list = Arrays.asList(
+                new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate), new KeyedEntity(3L, fdate));
+            when(keyedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new KeyedEntity(1L, fdate), new KeyedEntity(2L, fdate.plusSeconds(1))));
+
+            OptimisticLockException ex = assertThrows(OptimisticLockException.class,
+                () -> keyedService.checkUpdateListWithKeys(list));
+
+            assertEquals(Arrays.asList(Collections.singletonMap("id", 2L), Collections.singletonMap("id", 3L)),
+                ex.getConflictKeys());
+        }
+
+        @Test
+        @DisplayName("バージョンカラムで比較_異常系")
+        void comparesVersionColumn() {
+            @SuppressWarnings("unchecked")
+            BaseRepository<VersionedEntity> versionedRepository = mock(BaseRepository.class);
+            CrudService<VersionedEntity, BaseRepository<VersionedEntity>> versionedService = () -> versionedRepository;
+            when(versionedRepository.findLockValues(anyList()))
+                .thenReturn(Arrays.asList(new VersionedEntity(1L, 3L), new VersionedEntity(2L, 5L)));
+
+            List<Map<String, Object>> staleKeys = versionedService.findStaleKeys(
+                Arrays.asList(new VersionedEntity(1L, 3L), new VersionedEntity(2L, 4L)));
+
+            assertEquals(Collections.singletonList(Collections.singletonMap("id", 2L)), staleKeys);
+        }
+
+        @Test
+        @DisplayName("空リスト_正常系")
+        void emptyList() {
+            assertTrue(keyedService.findStaleKeys(Collections.emptyList()).isEmpty());
+            verify(keyedRepository, never()).findLockValues(anyList());
+        }
+    }
+
     private static class DummyEntity extends BaseEntity {}
+
+    private interface KeyedRepository extends BaseRepository<KeyedEntity> {}
+
+    @TableName("versioned_entity")
+    private static class VersionedEntity extends BaseEntity {
+        @Id
+        private final Long id;
+        @Version
+        private final Long lockVersion;
+
+        VersionedEntity(Long id, Long lockVersion) {
+            this.id = id;
+            this.lockVersion = lockVersion;
+        }
+    }
+
+    @TableName("retried_entity")
+    @RetryOnConflict(backoffMillis = 0)
+    private static class RetriedEntity extends BaseEntity {
+        @Id
+        private final Long id;
+
+        RetriedEntity(Long id) {
+            this.id = id;
+        }
+    }
+
+    @TableName("cached_entity")
+    @EntityCache
+    private static class CachedEntity extends BaseEntity {
+        @Id
+        private final Long id;
+
+        CachedEntity() {
+            this(null);
+        }
+
+        CachedEntity(Long id) {
+            this.id = id;
+        }
+    }
+
+    @TableName("keyed_entity")
+    private static class KeyedEntity extends BaseEntity {
+        @Id
+        private final Long id;
+
+        KeyedEntity(Long id) {
+            this.id = id;
+        }
+
+        KeyedEntity(Long id, LocalDateTime zzcmnFdate) {
+            this.id = id;
+            setZzcmnFdate(zzcmnFdate);
+        }
+    }
 }
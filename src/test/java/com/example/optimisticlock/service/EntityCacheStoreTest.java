@@ -0,0 +1,186 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.annotation.EntityCache;
+import com.example.optimisticlock.annotation.TableName;
+import com.example.optimisticlock.entity.BaseEntity;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.Id;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+// EntityCacheStoreの読み込み・更新・無効化を検証するテスト。
+@DisplayName("EntityCacheStoreの振る舞い")
+class EntityCacheStoreTest {
+
+    private static final LocalDateTime FDATE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @Nested
+    @DisplayName("of")
+    class Of {
+
+        @Test
+        @DisplayName("@EntityCache付与_正常系")
+        void returnsSameStore() {
+            assertSame(EntityCacheStore.of(RefreshEntity.class), EntityCacheStore.of(RefreshEntity.class));
+        }
+
+        @Test
+        @DisplayName("@EntityCache未付与_正常系")
+        void returnsNullWithoutAnnotation() {
+            assertNull(EntityCacheStore.of(PlainEntity.class));
+        }
+    }
+
+    @Nested
+    @DisplayName("refresh")
+    class Refresh {
+
+        @Test
+        @DisplayName("新しい最終更新日時のみ反映_正常系")
+        void acceptsOnlyNewerVersion() {
+            EntityCacheStore store = EntityCacheStore.of(RefreshEntity.class);
+            Map<String, Object> key = Collections.singletonMap("id", 1L);
+            RefreshEntity cached = new RefreshEntity(1L, FDATE);
+            store.get(key, k -> cached);
+
+            store.refresh(key, new RefreshEntity(1L, FDATE.minusSeconds(1)));
+            assertEquals(FDATE, store.<RefreshEntity>get(key, k -> null).getZzcmnFdate());
+
+            RefreshEntity newer = new RefreshEntity(1L, FDATE.plusSeconds(1));
+            store.refresh(key, newer);
+            assertEquals(FDATE.plusSeconds(1), store.<RefreshEntity>get(key, k -> null).getZzcmnFdate());
+
+            // 登録したのは複製のため、渡したエンティティを変更してもキャッシュは変わらない
+            newer.setZzcmnFdate(FDATE.plusSeconds(2));
+            assertEquals(FDATE.plusSeconds(1), store.<RefreshEntity>get(key, k -> null).getZzcmnFdate());
+        }
+
+        @Test
+        @DisplayName("未登録の主キーは登録しない_正常系")
+        void ignoresAbsentKey() {
+            EntityCacheStore store = EntityCacheStore.of(RefreshEntity.class);
+            Map<String, Object> key = Collections.singletonMap("id", 2L);
+
+            store.refresh(key, new RefreshEntity(2L, FDATE));
+
+            assertNull(store.get(key, k -> null));
+        }
+    }
+
+    @Nested
+    @DisplayName("get")
+    class Get {
+
+        @Test
+        @DisplayName("取得ごとに複製を返却_正常系")
+        void returnsCopies() {
+            EntityCacheStore store = EntityCacheStore.of(RefreshEntity.class);
+            Map<String, Object> key = Collections.singletonMap("id", 3L);
+            RefreshEntity loaded = new RefreshEntity(3L, FDATE);
+
+            RefreshEntity first = store.get(key, k -> loaded);
+            first.setZzcmnFdate(FDATE.plusSeconds(1));
+            RefreshEntity second = store.get(key, k -> null);
+
+            assertNotSame(loaded, first);
+            assertNotSame(first, second);
+            assertEquals(Long.valueOf(3L), second.id);
+            assertEquals(FDATE, second.getZzcmnFdate());
+        }
+    }
+
+    @Nested
+    @DisplayName("invalidate")
+    class Invalidate {
+
+        @Test
+        @DisplayName("ロールバック後も無効化_正常系")
+        void evictsAfterRollback() throws SQLException {
+            DataSource dataSource = mock(DataSource.class);
+            when(dataSource.getConnection()).thenReturn(mock(Connection.class));
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            EntityCacheStore store = EntityCacheStore.of(RefreshEntity.class);
+            Map<String, Object> key = Collections.singletonMap("id", 4L);
+
+            transaction.executeWithoutResult(status -> {
+                store.invalidate(key);
+                // 完了前に未コミットの行が読み込まれた状態を再現する
+                store.get(key, k -> new RefreshEntity(4L, FDATE));
+                status.setRollbackOnly();
+            });
+
+            assertNull(store.get(key, k -> null));
+        }
+    }
+
+    @Nested
+    @DisplayName("stats")
+    class Stats {
+
+        @Test
+        @DisplayName("ヒットとミスの計上_正常系")
+        void recordsHitsAndMisses() {
+            EntityCacheStore store = EntityCacheStore.of(StatsEntity.class);
+            Map<String, Object> key = Collections.singletonMap("id", 1L);
+
+            store.get(key, k -> new StatsEntity(1L, FDATE));
+            store.get(key, k -> null);
+            store.invalidate(key);
+            store.get(key, k -> null);
+
+            Map<String, Object> stats = store.stats();
+            assertEquals(1L, stats.get("hitCount"));
+            assertEquals(2L, stats.get("missCount"));
+        }
+    }
+
+    @TableName("refresh_entity")
+    @EntityCache(maximumSize = 10)
+    private static class RefreshEntity extends BaseEntity {
+        @Id
+        private final Long id;
+
+        RefreshEntity() {
+            this(null, null);
+        }
+
+        RefreshEntity(Long id, LocalDateTime zzcmnFdate) {
+            this.id = id;
+            setZzcmnFdate(zzcmnFdate);
+        }
+    }
+
+    @TableName("stats_entity")
+    @EntityCache
+    private static class StatsEntity extends BaseEntity {
+        @Id
+        private final Long id;
+
+        StatsEntity() {
+            this(null, null);
+        }
+
+        StatsEntity(Long id, LocalDateTime zzcmnFdate) {
+            this.id = id;
+            setZzcmnFdate(zzcmnFdate);
+        }
+    }
+
+    @TableName("plain_entity")
+    private static class PlainEntity extends BaseEntity {
+        @Id
+        private Long id;
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.optimisticlock.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// ReadCoalescerによる同一主キー検索の集約を検証するテスト。
+@DisplayName("ReadCoalescerの振る舞い")
+class ReadCoalescerTest {
+
+    private static final int FOLLOWERS = 3;
+
+    @Nested
+    @DisplayName("load")
+    class Load {
+
+        @Test
+        @DisplayName("実行中の検索に相乗りして結果を共有_正常系")
+        void sharesInFlightQuery() throws Exception {
+            ReadCoalescer coalescer = new ReadCoalescer();
+            AtomicInteger queries = new AtomicInteger();
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> row = new ArrayList<>(Collections.singletonList("row"));
+
+            List<Object> results = loadConcurrently(coalescer, release, () -> {
+                queries.incrementAndGet();
+                await(release);
+                return row;
+            });
+
+            assertEquals(1, queries.get());
+            // 検索したインスタンスは渡さず、呼び出し元ごとに別の複製を返す
+            assertEquals(FOLLOWERS + 1, results.stream().map(System::identityHashCode).distinct().count());
+            for (Object result : results) {
+                assertNotSame(row, result);
+                assertEquals(row.get(0), ((List<?>) result).get(0));
+            }
+            assertEquals(1L, coalescer.stats().get("queryCount"));
+            assertEquals((long) FOLLOWERS, coalescer.stats().get("coalescedCount"));
+            assertEquals(0, coalescer.stats().get("inFlightCount"));
+        }
+
+        @Test
+        @DisplayName("検索の失敗は相乗りした呼び出し元にも伝える_異常系")
+        void propagatesFailure() throws Exception {
+            ReadCoalescer coalescer = new ReadCoalescer();
+            CountDownLatch release = new CountDownLatch(1);
+
+            ExecutionFailure failure = assertThrows(ExecutionFailure.class, () ->
+                loadConcurrently(coalescer, release, () -> {
+                    await(release);
+                    throw new IllegalStateException("db down");
+                }));
+
+            assertEquals(FOLLOWERS + 1, failure.causes.size());
+            for (Throwable cause : failure.causes) {
+                assertTrue(cause instanceof IllegalStateException);
+            }
+        }
+
+        @Test
+        @DisplayName("完了後の呼び出しは新たに検索_正常系")
+        void queriesAgainAfterCompletion() {
+            ReadCoalescer coalescer = new ReadCoalescer();
+            AtomicInteger queries = new AtomicInteger();
+
+            coalescer.load("key", queries::incrementAndGet, UnaryOperator.identity());
+            coalescer.load("key", queries::incrementAndGet, UnaryOperator.identity());
+
+            assertEquals(2, queries.get());
+        }
+    }
+
+    /**
+     * 先行する1件の検索が止まっている間に後続の呼び出しをすべて待機させ、その後に検索を完了させる。
+     */
+    private List<Object> loadConcurrently(ReadCoalescer coalescer, CountDownLatch release, Supplier<Object> loader)
+        throws Exception {
+        UnaryOperator<Object> copier = value -> new ArrayList<>((List<?>) value);
+        ExecutorService executor = Executors.newFixedThreadPool(FOLLOWERS + 1);
+        try {
+            List<Future<Object>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> coalescer.load("key", loader, copier)));
+            waitUntil(() -> coalescer.stats().get("inFlightCount").equals(1));
+            for (int i = 0; i < FOLLOWERS; i++) {
+                futures.add(executor.submit(() -> coalescer.load("key", loader, copier)));
+            }
+            waitUntil(() -> coalescer.stats().get("waitingCount").equals(FOLLOWERS));
+            release.countDown();
+
+            List<Object> results = new ArrayList<>();
+            List<Throwable> causes = new ArrayList<>();
+            for (Future<Object> future : futures) {
+                try {
+                    results.add(future.get(5, TimeUnit.SECONDS));
+                } catch (ExecutionException ex) {
+                    causes.add(ex.getCause());
+                }
+            }
+            if (!causes.isEmpty()) {
+                throw new ExecutionFailure(causes);
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void waitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.get()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 呼び出し元ごとの失敗をまとめて検証するための例外。
+    private static final class ExecutionFailure extends Exception {
+        private final List<Throwable> causes;
+
+        ExecutionFailure(List<Throwable> causes) {
+            this.causes = causes;
+        }
+    }
+}
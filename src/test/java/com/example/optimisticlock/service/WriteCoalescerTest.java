@@ -0,0 +1,130 @@
+package com.example.optimisticlock.service;
+
+import com.example.optimisticlock.exception.OptimisticLockException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// WriteCoalescerによる同一主キー更新の集約を検証するテスト。
+@DisplayName("WriteCoalescerの振る舞い")
+class WriteCoalescerTest {
+
+    @Nested
+    @DisplayName("submit")
+    class Submit {
+
+        @Test
+        @DisplayName("他に更新がなければ時間窓を待たない_正常系")
+        void skipsWindowWithoutWaiters() {
+            WriteCoalescer coalescer = new WriteCoalescer(10_000, 4);
+            AtomicInteger writes = new AtomicInteger();
+
+            long started = System.nanoTime();
+            String result = coalescer.submit("key", "v1", "w0", value -> {
+                writes.incrementAndGet();
+                return value;
+            }, (latest, attempted) -> latest + "," + attempted);
+
+            assertEquals("w0", result);
+            assertEquals(1, writes.get());
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 5_000);
+        }
+
+        @Test
+        @DisplayName("実行中の更新がある間の同じ版の更新は1回にまとめる_正常系")
+        void mergesSameVersionWrites() throws Exception {
+            WriteCoalescer coalescer = new WriteCoalescer(500, 1);
+            AtomicInteger writes = new AtomicInteger();
+            CountDownLatch writing = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                // 別の主キーの更新を実行中にしておき、振り分け先が混み合っている状態を作る
+                Future<String> busy = executor.submit(() -> coalescer.submit("other", "v1", "busy", value -> {
+                    writing.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return value;
+                }, (latest, attempted) -> latest + "," + attempted));
+                writing.await();
+
+                List<Future<String>> futures = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    int index = i;
+                    futures.add(executor.submit(() -> coalescer.submit("key", "v1", "w" + index, value -> {
+                        writes.incrementAndGet();
+                        return value;
+                    }, (latest, attempted) -> latest + "," + attempted)));
+                }
+                List<String> results = new ArrayList<>();
+                for (Future<String> future : futures) {
+                    results.add(future.get());
+                }
+                release.countDown();
+
+                assertEquals("busy", busy.get());
+                assertEquals(1, writes.get());
+                String shared = results.get(0);
+                for (String result : results) {
+                    assertSame(shared, result);
+                }
+                for (int i = 0; i < 3; i++) {
+                    assertTrue(shared.contains("w" + i));
+                }
+            } finally {
+                release.countDown();
+                executor.shutdownNow();
+            }
+        }
+
+        @Test
+        @DisplayName("異なる版の更新は個別に実行_異常系")
+        void keepsConflictsForOtherVersions() throws Exception {
+            WriteCoalescer coalescer = new WriteCoalescer(200, 4);
+            AtomicInteger writes = new AtomicInteger();
+            // どの呼び出し元がまとめて実行しても、古い版の更新だけがDBで失敗する状況を再現する
+            UnaryOperator<String> writer = value -> {
+                writes.incrementAndGet();
+                if (value.contains("stale")) {
+                    throw new OptimisticLockException("conflict");
+                }
+                return value;
+            };
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(2);
+            try {
+                Future<String> current = executor.submit(() -> {
+                    start.await();
+                    return coalescer.submit("key", "v1", "fresh", writer, (latest, attempted) -> latest + attempted);
+                });
+                Future<String> stale = executor.submit(() -> {
+                    start.await();
+                    return coalescer.submit("key", "v0", "stale", writer, (latest, attempted) -> latest + attempted);
+                });
+                start.countDown();
+
+                assertEquals("fresh", current.get());
+                Exception ex = assertThrows(Exception.class, stale::get);
+                assertTrue(ex.getCause() instanceof OptimisticLockException);
+                assertEquals(2, writes.get());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
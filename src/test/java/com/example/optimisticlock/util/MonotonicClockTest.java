@@ -0,0 +1,73 @@
+package com.example.optimisticlock.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// MonotonicClockの採番を検証するテスト。
+@DisplayName("MonotonicClockの振る舞い")
+class MonotonicClockTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00.123Z");
+
+    @Nested
+    @DisplayName("next")
+    class Next {
+
+        @Test
+        @DisplayName("同一ミリ秒内の連続採番_正常系")
+        void incrementsWithinSameMillisecond() {
+            MonotonicClock clock = new MonotonicClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+            LocalDateTime first = clock.next();
+            LocalDateTime second = clock.next();
+
+            assertEquals(LocalDateTime.of(2024, 1, 1, 0, 0, 0, 123_000_000), first);
+            assertEquals(first.plusNanos(1_000_000), second);
+        }
+    }
+
+    @Nested
+    @DisplayName("nextAfter")
+    class NextAfter {
+
+        @Test
+        @DisplayName("更新前の値より後_正常系")
+        void alwaysAfterPrevious() {
+            MonotonicClock clock = new MonotonicClock(Clock.fixed(NOW, ZoneOffset.UTC));
+            LocalDateTime future = LocalDateTime.of(2030, 1, 1, 0, 0, 0, 500_999);
+
+            assertEquals(LocalDateTime.of(2030, 1, 1, 0, 0, 0, 1_000_000), clock.nextAfter(future));
+            assertTrue(clock.nextAfter(null).isAfter(LocalDateTime.of(2024, 1, 1, 0, 0)));
+        }
+    }
+
+    @Nested
+    @DisplayName("useZone")
+    class UseZone {
+
+        @Test
+        @DisplayName("DBのタイムゾーンで採番_正常系")
+        void stampsInDatabaseZone() {
+            ZoneOffset database = ZoneOffset.ofHours(8);
+            try {
+                MonotonicClock clock = MonotonicClock.useZone(database);
+
+                assertSame(clock, MonotonicClock.shared());
+                LocalDateTime expected = LocalDateTime.now(database);
+                assertTrue(Math.abs(ChronoUnit.MINUTES.between(expected, clock.next())) < 1);
+            } finally {
+                MonotonicClock.useZone(ZoneId.systemDefault());
+            }
+        }
+    }
+}